@@ -0,0 +1,23 @@
+import java.sql.SQLException;
+
+/**
+ * Receives progress from SQLite.addMovies. Both callbacks default to doing
+ * nothing so callers only override what they need.
+ */
+public interface BulkInsertListener {
+
+    /**
+     * Called after a batch has been committed.
+     * @param batch the 1-based batch number
+     * @param rowsInBatch the rows inserted by this batch
+     * @param totalInserted the rows inserted so far
+     */
+    default void batchCommitted(int batch, int rowsInBatch, long totalInserted) {
+    }
+
+    /**
+     * Called for each movie that could not be inserted. The rest of the batch is still committed.
+     */
+    default void rowFailed(Movie movie, SQLException e) {
+    }
+}
@@ -0,0 +1,72 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of a SQLite.addMovies run: how many rows went in, how many batches
+ * were committed and which movies failed.
+ */
+public class BulkInsertResult {
+
+    public static class Failure {
+        private final Movie movie;
+        private final SQLException exception;
+
+        Failure(Movie movie, SQLException exception) {
+            this.movie = movie;
+            this.exception = exception;
+        }
+
+        public Movie getMovie() {
+            return movie;
+        }
+
+        public SQLException getException() {
+            return exception;
+        }
+    }
+
+    private long inserted;
+    private int batches;
+    private final List<Failure> failures = new ArrayList<>();
+
+    void addInserted(int rows) {
+        inserted += rows;
+    }
+
+    void addBatch() {
+        batches++;
+    }
+
+    void addFailure(Movie movie, SQLException e) {
+        failures.add(new Failure(movie, e));
+    }
+
+    void add(BulkInsertResult other) {
+        inserted += other.inserted;
+        batches += other.batches;
+        failures.addAll(other.failures);
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    public List<Failure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    @Override
+    public String toString() {
+        return "BulkInsertResult{" +
+                "inserted=" + inserted +
+                ", batches=" + batches +
+                ", failed=" + failures.size() +
+                '}';
+    }
+}
@@ -0,0 +1,80 @@
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Stops sending requests to OMDB after repeated failures. After failureThreshold failures
+ * in a row the circuit opens and requests are refused at once. Once openDuration has
+ * passed, a single trial request is let through: success closes the circuit again,
+ * failure keeps it open for another openDuration.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+    }
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, Clock.systemUTC());
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openDuration.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns whether a request may be sent now. While half open only the one trial request is allowed.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && clock.millis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    /**
+     * Gives back a request allowed by allowRequest() that was not sent after all, so that
+     * while half open the next request becomes the trial instead.
+     */
+    public synchronized void cancelRequest() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAt = clock.millis() - openMillis;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.millis();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the memory and lookup time of type-ahead completions: a CompletionIndex loaded with
+ * synthetic movies, each with a title, three actors and a director drawn from shared pools,
+ * and a PrefixIndex over the title completions alone. Memory is reported per million
+ * completions, the unit the index grows by.
+ *
+ * Run it with: java CompletionBenchmark [--movies 250000] [--queries 20000]
+ * Give the JVM a fixed heap (e.g. -Xms2g -Xmx2g) so the measurements are comparable.
+ */
+public class CompletionBenchmark {
+
+    private static final int VOCABULARY = 5000;
+    private static final int LIMIT = 10;
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = OmdbStubServer.parseOptions(args);
+        int count = Integer.parseInt(options.getOrDefault("movies", "250000"));
+        int queries = Integer.parseInt(options.getOrDefault("queries", "20000"));
+        Random random = new Random(1);
+        String[] vocabulary = vocabulary(random);
+        List<Movie> movies = movies(random, vocabulary, count);
+
+        List<CompletionIndex.Completion> titles = new ArrayList<>(count);
+        for (Movie movie : movies) {
+            titles.add(new CompletionIndex.Completion(CompletionIndex.TITLE, movie.getTitle(), movie.getImdbVotesLong()));
+        }
+        long before = usedHeap();
+        PrefixIndex prefixes = PrefixIndex.of(titles);
+        long used = usedHeap() - before;
+        System.out.printf("PrefixIndex of the titles: %d completions, %d keys, %.0f bytes per key, %.0f MB per million completions%n",
+                titles.size(), prefixes.size(), (double) used / prefixes.size(), used / 1e6 * 1_000_000 / titles.size());
+
+        before = usedHeap();
+        CompletionIndex index = new CompletionIndex();
+        long start = System.nanoTime();
+        for (int rowid = 0; rowid < movies.size(); rowid++) {
+            index.add(rowid, movies.get(rowid));
+        }
+        // The first lookup merges the added completions into the PrefixIndex
+        index.complete("a", LIMIT);
+        long built = System.nanoTime() - start;
+        used = usedHeap() - before;
+        System.out.printf("CompletionIndex: %d movies, %d completions, built in %.0f ms, %.0f bytes per completion, %.0f MB per million%n",
+                count, index.size(), built / 1e6, (double) used / index.size(), used / 1e6 * 1_000_000 / index.size());
+
+        long[] latencies = new long[queries];
+        long found = 0;
+        for (int i = 0; i < queries; i++) {
+            String prefix = vocabulary[random.nextInt(vocabulary.length)].substring(0, 2);
+            long sent = System.nanoTime();
+            found += index.complete(prefix, LIMIT).size();
+            latencies[i] = System.nanoTime() - sent;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("Top %d completions of two letters: p50 %.1f us, p99 %.1f us, %.1f found per lookup%n",
+                LIMIT, latencies[queries / 2] / 1e3, latencies[queries * 99 / 100] / 1e3, (double) found / queries);
+    }
+
+    private static List<Movie> movies(Random random, String[] vocabulary, int count) {
+        List<Movie> movies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String title = word(random, vocabulary) + " " + word(random, vocabulary)
+                    + (random.nextBoolean() ? " " + word(random, vocabulary) : "");
+            String actors = person(random, vocabulary, count) + ", " + person(random, vocabulary, count) + ", "
+                    + person(random, vocabulary, count);
+            movies.add(new Movie(title, "2000", "PG", "01 Jan 2000", "100 min", "Drama", person(random, vocabulary, count / 4),
+                    "N/A", actors, "N/A", "English", "United States", "N/A", "N/A", "50", "7.0",
+                    String.format("%,d", random.nextInt(2_000_000)), "tt" + (1000000 + i), "movie"));
+        }
+        return movies;
+    }
+
+    /**
+     * Returns one of the given number of names, picked at random, so that people recur across
+     * movies as they do in a catalog.
+     */
+    private static String person(Random random, String[] vocabulary, int people) {
+        int n = random.nextInt(Math.max(1, people));
+        return capitalize(vocabulary[n % vocabulary.length]) + " " + capitalize(vocabulary[n / vocabulary.length % vocabulary.length]);
+    }
+
+    private static String word(Random random, String[] vocabulary) {
+        return capitalize(vocabulary[random.nextInt(vocabulary.length)]);
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static String[] vocabulary(Random random) {
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int letters = 3 + random.nextInt(6);
+            for (int j = 0; j < letters; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
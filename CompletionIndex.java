@@ -0,0 +1,221 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Type-ahead completions for titles, actors and directors, ranked by IMDb votes. A title
+ * weighs its movie's votes; a person weighs the votes of all their movies added up.
+ *
+ * Lookups go to an immutable PrefixIndex plus a small overlay of the completions added and
+ * removed since it was built. The first lookup after the overlay grows past MERGE_THRESHOLD
+ * changes merges it into a new PrefixIndex, so adding or deleting a movie never rebuilds the
+ * index, and loading a whole catalog builds it once. Safe to call from any thread.
+ */
+public class CompletionIndex {
+
+    public static final String TITLE = "title";
+    public static final String ACTOR = CreditIndex.ACTOR;
+    public static final String DIRECTOR = CreditIndex.DIRECTOR;
+
+    static final int MERGE_THRESHOLD = 1000;
+
+    /**
+     * One suggestion: a title or a person's name.
+     */
+    public static final class Completion {
+        private final String kind;
+        private final String value;
+        private final long votes;
+
+        Completion(String kind, String value, long votes) {
+            this.kind = kind;
+            this.value = value;
+            this.votes = votes;
+        }
+
+        /**
+         * TITLE, ACTOR or DIRECTOR.
+         */
+        public String getKind() {
+            return kind;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getVotes() {
+            return votes;
+        }
+
+        @Override
+        public String toString() {
+            return value + " (" + kind + ", " + votes + " votes)";
+        }
+    }
+
+    /**
+     * What was indexed for a movie, so its completions can be taken back when it goes.
+     */
+    private static final class IndexedMovie {
+        final Completion title;
+        final long votes;
+        final List<Person> people;
+
+        IndexedMovie(Completion title, long votes, List<Person> people) {
+            this.title = title;
+            this.votes = votes;
+            this.people = people;
+        }
+    }
+
+    /**
+     * A person's current completion and the number of indexed movies crediting them.
+     */
+    private static final class Person {
+        final String key;
+        Completion completion;
+        int movies;
+
+        Person(String key) {
+            this.key = key;
+        }
+    }
+
+    private PrefixIndex index = PrefixIndex.EMPTY;
+    // Completions not yet in the index, with their keys once a lookup has needed them
+    private final Map<Completion, List<String>> added = new LinkedHashMap<>();
+    private final Set<Completion> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Long, IndexedMovie> movies = new HashMap<>();
+    // Keyed by kind and folded name
+    private final Map<String, Person> people = new HashMap<>();
+
+    /**
+     * Adds the completions of a stored movie, replacing those indexed before for the same rowid.
+     */
+    public synchronized void add(long rowid, Movie movie) {
+        removeMovie(rowid);
+        long votes = Math.max(0, movie.getImdbVotesLong());
+        Completion title = null;
+        if (movie.getTitle() != null && !MovieSearchIndex.tokenize(movie.getTitle()).isEmpty()) {
+            title = new Completion(TITLE, movie.getTitle().trim(), votes);
+            insert(title);
+        }
+        List<Person> credited = new ArrayList<>();
+        for (String actor : CreditIndex.splitNames(movie.getActors())) {
+            credited.add(credit(ACTOR, actor, votes));
+        }
+        for (String director : CreditIndex.splitNames(movie.getDirector())) {
+            credited.add(credit(DIRECTOR, director, votes));
+        }
+        credited.removeIf(Objects::isNull);
+        movies.put(rowid, new IndexedMovie(title, votes, credited));
+    }
+
+    public synchronized void remove(long rowid) {
+        removeMovie(rowid);
+    }
+
+    /**
+     * Returns up to limit titles and names with a word starting with prefix, most votes first.
+     */
+    public synchronized List<Completion> complete(String prefix, int limit) {
+        String folded = TrigramIndex.fold(prefix);
+        if (folded.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (added.size() + removed.size() > MERGE_THRESHOLD) {
+            index = index.merge(removed, added.keySet());
+            added.clear();
+            removed.clear();
+        }
+        List<Completion> fresh = new ArrayList<>();
+        for (Map.Entry<Completion, List<String>> entry : added.entrySet()) {
+            if (entry.getValue() == null) {
+                entry.setValue(PrefixIndex.wordStarts(entry.getKey().getValue()));
+            }
+            for (String key : entry.getValue()) {
+                if (key.startsWith(folded)) {
+                    fresh.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        List<Completion> found = index.complete(folded, limit, completion -> !removed.contains(completion));
+        if (!fresh.isEmpty()) {
+            found.addAll(fresh);
+            found.sort((a, b) -> Long.compare(b.getVotes(), a.getVotes()));
+            if (found.size() > limit) {
+                found = new ArrayList<>(found.subList(0, limit));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the number of titles and people that can be completed.
+     */
+    public synchronized int size() {
+        return movies.size() + people.size();
+    }
+
+    /**
+     * Adds a movie's votes to a person, replacing their completion.
+     * @return the person, or null if the name is blank
+     */
+    private Person credit(String kind, String name, long votes) {
+        String folded = TrigramIndex.fold(name);
+        if (folded.isEmpty()) {
+            return null;
+        }
+        Person person = people.computeIfAbsent(kind + ":" + folded, Person::new);
+        Completion before = person.completion;
+        if (before != null) {
+            delete(before);
+        }
+        person.completion = new Completion(kind, before != null ? before.getValue() : name.trim(),
+                (before != null ? before.getVotes() : 0) + votes);
+        insert(person.completion);
+        person.movies++;
+        return person;
+    }
+
+    private void removeMovie(long rowid) {
+        IndexedMovie movie = movies.remove(rowid);
+        if (movie == null) {
+            return;
+        }
+        if (movie.title != null) {
+            delete(movie.title);
+        }
+        for (Person person : movie.people) {
+            Completion before = person.completion;
+            delete(before);
+            if (--person.movies == 0) {
+                people.remove(person.key);
+            } else {
+                person.completion = new Completion(before.getKind(), before.getValue(), before.getVotes() - movie.votes);
+                insert(person.completion);
+            }
+        }
+    }
+
+    private void insert(Completion completion) {
+        added.put(completion, null);
+    }
+
+    private void delete(Completion completion) {
+        // A completion still in the overlay never reached the index; its keys may not be computed yet
+        if (added.containsKey(completion)) {
+            added.remove(completion);
+        } else {
+            removed.add(completion);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Normalized people and genre tables for the movies table. The comma-separated
+ * actors, director, writer and genre columns are split into one row per name and
+ * linked to the movie's rowid, so lookups by name are exact indexed joins.
+ */
+public class CreditIndex {
+
+    public static final String ACTOR = "actor";
+    public static final String DIRECTOR = "director";
+    public static final String WRITER = "writer";
+
+    private static final int MIGRATION_CHUNK_SIZE = 1000;
+
+    private final Connection connection;
+    private final StatementCache statements;
+    private final SchemaInfo schemaInfo;
+
+    public CreditIndex(Connection connection, StatementCache statements, SchemaInfo schemaInfo) {
+        this.connection = connection;
+        this.statements = statements;
+        this.schemaInfo = schemaInfo;
+    }
+
+    public void createTables() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS people ( " +
+                    "id INTEGER PRIMARY KEY, " +
+                    "name TEXT NOT NULL UNIQUE COLLATE NOCASE)");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS genres ( " +
+                    "id INTEGER PRIMARY KEY, " +
+                    "name TEXT NOT NULL UNIQUE COLLATE NOCASE)");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS movie_people ( " +
+                    "person_id INTEGER NOT NULL REFERENCES people(id), " +
+                    "role TEXT NOT NULL, " +
+                    "movie_id INTEGER NOT NULL, " +
+                    "PRIMARY KEY (person_id, role, movie_id)) WITHOUT ROWID");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS movie_people_movie ON movie_people (movie_id)");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS movie_genres ( " +
+                    "genre_id INTEGER NOT NULL REFERENCES genres(id), " +
+                    "movie_id INTEGER NOT NULL, " +
+                    "PRIMARY KEY (genre_id, movie_id)) WITHOUT ROWID");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS movie_genres_movie ON movie_genres (movie_id)");
+            statement.executeUpdate("CREATE TRIGGER IF NOT EXISTS movies_credits_delete AFTER DELETE ON movies BEGIN " +
+                    "DELETE FROM movie_people WHERE movie_id = old.rowid; " +
+                    "DELETE FROM movie_genres WHERE movie_id = old.rowid; END");
+        }
+    }
+
+    /**
+     * Indexes movies that were stored before the normalized tables existed. Work is done in
+     * small transactions and the last indexed rowid is saved after each one, so readers are
+     * only blocked briefly and an interrupted migration resumes where it stopped.
+     * @return true once every existing movie has been indexed
+     */
+    public boolean migrate() {
+        try {
+            if (schemaInfo.get("credits_migrated", 0) == 1) {
+                return true;
+            }
+            long lastRowid = schemaInfo.get("credits_migrated_upto", 0);
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                while (true) {
+                    PreparedStatement preparedStatement = statements.get("SELECT rowid, actors, director, writer, genre " +
+                            "FROM movies WHERE rowid > ? ORDER BY rowid LIMIT ?");
+                    preparedStatement.setLong(1, lastRowid);
+                    preparedStatement.setInt(2, MIGRATION_CHUNK_SIZE);
+                    List<Long> movieIds = new ArrayList<>();
+                    List<String[]> credits = new ArrayList<>();
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            movieIds.add(resultSet.getLong(1));
+                            credits.add(new String[]{resultSet.getString(2), resultSet.getString(3),
+                                    resultSet.getString(4), resultSet.getString(5)});
+                        }
+                    }
+                    if (movieIds.isEmpty()) {
+                        schemaInfo.set("credits_migrated", 1);
+                        connection.commit();
+                        return true;
+                    }
+                    for (int i = 0; i < movieIds.size(); i++) {
+                        String[] row = credits.get(i);
+                        index(movieIds.get(i), row[0], row[1], row[2], row[3]);
+                    }
+                    lastRowid = movieIds.get(movieIds.size() - 1);
+                    schemaInfo.set("credits_migrated_upto", lastRowid);
+                    connection.commit();
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            System.out.println("Credit migration incomplete: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Links a stored movie to its people and genres. Safe to call more than once for the same movie.
+     */
+    public void index(long movieId, Movie movie) throws SQLException {
+        index(movieId, movie.getActors(), movie.getDirector(), movie.getWriter(), movie.getGenre());
+    }
+
+    private void index(long movieId, String actors, String directors, String writers, String genres) throws SQLException {
+        linkPeople(movieId, ACTOR, actors);
+        linkPeople(movieId, DIRECTOR, directors);
+        linkPeople(movieId, WRITER, writers);
+        for (String genre : splitNames(genres)) {
+            PreparedStatement insertGenre = statements.get("INSERT OR IGNORE INTO genres (name) VALUES (?)");
+            insertGenre.setString(1, genre);
+            insertGenre.executeUpdate();
+            PreparedStatement link = statements.get("INSERT OR IGNORE INTO movie_genres (genre_id, movie_id) " +
+                    "SELECT id, ? FROM genres WHERE name = ?");
+            link.setLong(1, movieId);
+            link.setString(2, genre);
+            link.executeUpdate();
+        }
+    }
+
+    /**
+     * Removes all links for a movie so it can be indexed again after its row changed.
+     */
+    public void unindex(long movieId) throws SQLException {
+        PreparedStatement people = statements.get("DELETE FROM movie_people WHERE movie_id = ?");
+        people.setLong(1, movieId);
+        people.executeUpdate();
+        PreparedStatement genres = statements.get("DELETE FROM movie_genres WHERE movie_id = ?");
+        genres.setLong(1, movieId);
+        genres.executeUpdate();
+    }
+
+    private void linkPeople(long movieId, String role, String names) throws SQLException {
+        for (String name : splitNames(names)) {
+            PreparedStatement insertPerson = statements.get("INSERT OR IGNORE INTO people (name) VALUES (?)");
+            insertPerson.setString(1, name);
+            insertPerson.executeUpdate();
+            PreparedStatement link = statements.get("INSERT OR IGNORE INTO movie_people (person_id, role, movie_id) " +
+                    "SELECT id, ?, ? FROM people WHERE name = ?");
+            link.setString(1, role);
+            link.setLong(2, movieId);
+            link.setString(3, name);
+            link.executeUpdate();
+        }
+    }
+
+    /**
+     * Splits an OMDB list such as "Jonathan Nolan (screenplay), Christopher Nolan" into names,
+     * dropping credit notes in parentheses, duplicates and "N/A".
+     */
+    public static List<String> splitNames(String list) {
+        Set<String> names = new LinkedHashSet<>();
+        if (list != null) {
+            for (String part : list.split(",")) {
+                String name = part.replaceAll("\\(.*?\\)", "").trim();
+                if (!name.isEmpty() && !name.equals("N/A")) {
+                    names.add(name);
+                }
+            }
+        }
+        return new ArrayList<>(names);
+    }
+}
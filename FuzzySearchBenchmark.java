@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures typo-tolerant title lookups in TrigramIndex as the catalog grows. Each size gets
+ * its own index of synthetic titles of one to four words, drawn so that some words are far
+ * more common than others, and is queried with stored titles that lost one letter.
+ *
+ * Run it with: java FuzzySearchBenchmark [--sizes 10000,100000] [--queries 500] [--words letters]
+ * --words letters makes words of random letters; --words syllables builds them from 20
+ * syllables, so they share few and very common trigrams, the hard case for the index.
+ */
+public class FuzzySearchBenchmark {
+
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ther", "god", "star", "war", "ne", "ri", "an",
+            "dor", "the", "fa", "sun", "bel", "qu", "x", "ze", "tor", "ion"};
+    private static final int VOCABULARY = 20000;
+    private static final int LIMIT = 10;
+
+    public static void main(String[] args) {
+        Map<String, String> options = OmdbStubServer.parseOptions(args);
+        int queries = Integer.parseInt(options.getOrDefault("queries", "500"));
+        boolean syllables = options.getOrDefault("words", "letters").equals("syllables");
+        Random random = new Random(1);
+        String[] vocabulary = vocabulary(random, syllables);
+
+        for (String size : options.getOrDefault("sizes", "10000,100000").split(",")) {
+            run(random, vocabulary, Integer.parseInt(size.trim()), queries);
+        }
+    }
+
+    private static void run(Random random, String[] vocabulary, int size, int queries) {
+        TrigramIndex index = new TrigramIndex();
+        List<String> titles = new ArrayList<>(size);
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 1 + random.nextInt(4);
+            for (int j = 0; j < words; j++) {
+                if (j > 0) {
+                    title.append(' ');
+                }
+                // Gaussian ranks make the first few thousand words the common ones
+                title.append(vocabulary[(int) Math.min(vocabulary.length - 1, Math.abs(random.nextGaussian()) * 3000)]);
+            }
+            titles.add(title.toString());
+            index.add(title.toString(), i);
+        }
+        long built = System.nanoTime() - start;
+
+        String[] typos = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            String title = titles.get(random.nextInt(size));
+            int dropped = random.nextInt(title.length());
+            typos[i] = title.substring(0, dropped) + title.substring(dropped + 1);
+        }
+        for (String typo : typos) {
+            index.search(typo, LIMIT, TrigramIndex.DEFAULT_MIN_SIMILARITY, document -> true);
+        }
+        long[] latencies = new long[queries];
+        long matches = 0;
+        for (int i = 0; i < queries; i++) {
+            long sent = System.nanoTime();
+            matches += index.search(typos[i], LIMIT, TrigramIndex.DEFAULT_MIN_SIMILARITY, document -> true).size();
+            latencies[i] = System.nanoTime() - sent;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%d titles (%d distinct), built in %.0f ms: p50 %.2f ms, p99 %.2f ms, max %.2f ms, %.1f matches per query%n",
+                size, index.size(), built / 1e6, latencies[queries / 2] / 1e6, latencies[queries * 99 / 100] / 1e6,
+                latencies[queries - 1] / 1e6, (double) matches / queries);
+    }
+
+    private static String[] vocabulary(Random random, boolean syllables) {
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int parts = 2 + random.nextInt(3);
+            for (int j = 0; j < parts; j++) {
+                if (syllables) {
+                    word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                } else {
+                    for (int k = 0; k < 3; k++) {
+                        word.append((char) ('a' + random.nextInt(26)));
+                    }
+                }
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+}
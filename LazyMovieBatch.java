@@ -0,0 +1,52 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Movies read without their heavy fields (writer, actors, plot, awards and poster) that are
+ * completed together. The first getter call for any of those fields on any movie in the batch
+ * loads them for the whole batch with one query by imdbID, so showing the details of a page
+ * costs one extra query rather than one per movie. If the database has been closed by then,
+ * the fields stay null.
+ */
+public class LazyMovieBatch {
+
+    private final SQLite database;
+    private List<Movie> movies = new ArrayList<>();
+
+    LazyMovieBatch(SQLite database) {
+        this.database = database;
+    }
+
+    void add(Movie movie) {
+        movies.add(movie);
+        movie.setPendingDetails(this);
+    }
+
+    int size() {
+        return movies.size();
+    }
+
+    synchronized void load() {
+        if (movies == null) {
+            return;
+        }
+        List<String> imdbIDs = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            if (movie.getImdbID() != null) {
+                imdbIDs.add(movie.getImdbID());
+            }
+        }
+        Map<String, String[]> details = database.getMovieDetails(imdbIDs);
+        for (Movie movie : movies) {
+            String[] fields = details.get(movie.getImdbID());
+            if (fields != null) {
+                movie.setDetails(fields[0], fields[1], fields[2], fields[3], fields[4]);
+            } else {
+                movie.setDetails(null, null, null, null, null);
+            }
+        }
+        // Loaded movies no longer keep each other reachable
+        movies = null;
+    }
+}
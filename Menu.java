@@ -2,6 +2,9 @@ import org.json.JSONException;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntFunction;
 
 
 // Modify Menu class to use the factory
@@ -10,6 +13,9 @@ public class Menu {
     private SQLite database;
     private OMDBApi omdbAPI;
 
+    private static final int PAGE_SIZE = 20;
+    private static final int SUGGESTIONS = 5;
+
     private KeyReader keyReader = new KeyReader();
     private MovieDatabaseFactory factory = new DefaultMovieDatabaseFactory();
 
@@ -17,7 +23,7 @@ public class Menu {
         scanner = factory.createScanner();
         database = factory.createSQLite("film.db");
         String apiKey = keyReader.getApiKey();
-        omdbAPI = factory.createOMDBApi(apiKey);
+        omdbAPI = factory.createOMDBApi(apiKey, database);
     }
 
 
@@ -67,47 +73,77 @@ public class Menu {
                     break;
             }
         }
-
+        database.close();
     }
 
     /**
-
-     * @throws SQLException
+     * Shows every movie in the database in title order, one page at a time.
      */
     public void showAllMovies() {
-        try {
-            // Retrieve all movies from the database
-            Movie[] movies = database.getMovie("");
+        // Fetch one page at a time so memory use does not depend on the catalog size
+        MovieSummary[] movies = database.getSummariesAfter(null, null, PAGE_SIZE);
 
-            // Display the movies to the user
-            if (movies.length == 0) {
-                System.out.println("No movies found");
-                System.out.println("Please add a movie first or search for a movie.");
-            } else {
-                System.out.println("All movies:\n");
-                for (Movie movie : movies) {
-                    System.out.println(movie.getTitle() + " (" + movie.getYear() + ")");
-                    System.out.println("Genre: " + movie.getGenre());
-                    System.out.println("Actors: " + movie.getActors());
-                    System.out.println("Director: " + movie.getDirector());
-                    System.out.println("Type: " + movie.getType());
-                    System.out.println("Plot: " + movie.getPlot() + "\n");
-                }
+        // Display the movies to the user
+        if (movies.length == 0) {
+            System.out.println("No movies found");
+            System.out.println("Please add a movie first or search for a movie.");
+            return;
+        }
+        System.out.println("All movies:\n");
+        while (movies.length > 0) {
+            for (MovieSummary movie : movies) {
+                System.out.println(movie.getTitle() + " (" + movie.getYear() + ")");
+                System.out.println("Type: " + movie.getType());
+                System.out.println("IMDb rating: " + movie.getImdbRating() + "\n");
             }
-        } catch (SQLException e) {
-            System.out.println("Error retrieving movies: " + e.getMessage());
+            if (movies.length < PAGE_SIZE || !nextPage(scanner)) {
+                break;
+            }
+            MovieSummary last = movies[movies.length - 1];
+            movies = database.getSummariesAfter(last.getTitle(), last.getImdbID(), PAGE_SIZE);
         }
     }
 
     /**
+     * Prints movies one page at a time, pausing after every page. Each page is loaded only once
+     * the user asks for it, so nothing is held open while waiting for the answer.
+     * @param pages loads the page starting at the given offset, at most PAGE_SIZE movies
+     * @param header printed once before the first movie
+     * @return the number of movies printed
+     */
+    private int printPaged(IntFunction<MovieSummary[]> pages, String header) {
+        int shown = 0;
+        MovieSummary[] movies = pages.apply(0);
+        while (movies.length > 0) {
+            if (shown == 0) {
+                System.out.println(header);
+            }
+            for (MovieSummary movie : movies) {
+                System.out.println(movie.getTitle() + " (" + movie.getYear() + ")");
+            }
+            shown += movies.length;
+            if (movies.length < PAGE_SIZE || !nextPage(scanner)) {
+                break;
+            }
+            movies = pages.apply(shown);
+        }
+        return shown;
+    }
 
-     Prompts the user to enter a movie title and adds it to the local database if it is not already present.
+    /**
+     * Asks whether to show the next page and returns false if the user wants to stop.
+     */
+    private boolean nextPage(Scanner input) {
+        System.out.println("Press Enter for more, or q to stop");
+        return !input.nextLine().trim().equalsIgnoreCase("q");
+    }
 
-     If the movie is not found in the local database, the method makes an API request to search for the movie online.
+    /**
 
-     If the movie is found online, the user is prompted to add the movie to the local database.
+     Prompts the user to enter a movie title, looks it up online and saves it to the local database.
 
-     If the movie is already present in the local database, a message is displayed indicating that the movie is already in the database.
+     The movie is stored by its imdbID, so adding a movie that is already present refreshes the stored copy
+     instead of creating a duplicate.
 
      @throws SQLException if there is an error accessing the database
      */
@@ -116,37 +152,26 @@ public class Menu {
         System.out.println("\nEnter movie title:");
         String title = scanner.nextLine();
 
-        Movie[] movies = database.getMovie(title);
-        if (movies.length == 0) {
-            // Movie not found in local database
-            System.out.println("Movie not found in database. Searching online...");
-            try {
-                OMDBApi api = new OMDBApi(keyReader.getApiKey());
-                Movie movie = api.getMovie(title);
-                if (movie == null) {
-                    System.out.println("Movie not found online. Please try again later.");
-                    return;
-                }
-                System.out.println(movie);
-
-                System.out.println("Do you want to add this movie to the database? (y/n)");
-                String answer = scanner.nextLine();
-                if (answer.equals("y")) {
-                    database.addMovie(movie);
-                    System.out.println("Movie added to database");
-                } else {
-                    System.out.println("Movie not added");
-                }
+        try {
+            Movie movie = omdbAPI.getMovie(title);
+            if (movie == null) {
+                System.out.println("Movie not found online. Please try again later.");
+                return;
+            }
+            System.out.println(movie);
 
-            } catch (JSONException e) {
-                System.err.println("Error fetching movie from OMDb API: " + e.getMessage());
-                System.out.println("Could not find movie online. Please try again later.");
+            System.out.println("Do you want to add this movie to the database? (y/n)");
+            String answer = scanner.nextLine();
+            if (answer.equals("y")) {
+                database.upsertMovie(movie);
+                System.out.println("Movie saved to database");
+            } else {
+                System.out.println("Movie not added");
             }
-        } else {
-            // Movie found in local database
-            Movie movie = movies[0];
-            System.out.println(movie.toString());
-            System.out.println("Movie already in database");
+
+        } catch (JSONException e) {
+            System.err.println("Error fetching movie from OMDb API: " + e.getMessage());
+            System.out.println("Could not find movie online. Please try again later.");
         }
     }
 
@@ -220,35 +245,49 @@ public class Menu {
 
     }
 /**   * Searches for movies in the database based on the user input of the movie title.
-     * If the movie is not found in the database, it makes an API request to search for the movie online.
-     * If the movie is found online, it prompts the user for confirmation before adding the movie to the database.
+     * If the movie is not found in the database, it searches OMDB and lists the matches a page at a time.
+     * The movies the user picks from the list are fetched in full, in parallel, and added to the database.
      */
     public void searchMovies() {
         System.out.println("\nEnter movie title:");
         String title = scanner.nextLine();
-        Movie[] movies = Movie.getMovie(title);
+        Movie[] movies;
+        try {
+            movies = database.getMovie(title);
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+            movies = new Movie[0];
+        }
         if (movies.length == 0) {
-            try {
-                // Movie not found in local database, make API request
-                OMDBApi omdbApi = new OMDBApi(keyReader.getApiKey());
-                Movie[] apiMovies = omdbApi.getMovie(title, keyReader.getApiKey());
-
-                if (apiMovies.length == 0) {
-                    System.out.println("No movies found");
-                } else {
-                    System.out.println("Results from OMDB API:");
-                    displayResult(apiMovies);
-                    for (Movie movie : apiMovies) {
-                        System.out.println("Do you want to add this movie to the database? (Y/N)");
-                        String answer = scanner.nextLine();
-                        if (answer.equalsIgnoreCase("Y")) {
-                            database.addMovie(movie); // add movie to database
-                        }
-                    }
+            movies = pickCloseMatch(title);
+        }
+        if (movies.length == 0) {
+            // Movie not found in local database, search OMDB
+            SearchResults results = omdbAPI.search(title);
+            List<SearchHit> hits = results.nextPage();
+            if (hits.isEmpty()) {
+                System.out.println("No movies found");
+                return;
+            }
+            System.out.println("Results from OMDB API (" + results.getTotalResults() + " found):");
+            List<SearchHit> shown = new ArrayList<>();
+            while (!hits.isEmpty()) {
+                for (SearchHit hit : hits) {
+                    shown.add(hit);
+                    System.out.println(shown.size() + ". " + hit.getTitle() + " (" + hit.getYear() + ") " + hit.getType());
+                }
+                System.out.println("Enter the numbers of the movies to add, separated by commas, Enter for more, or q to stop");
+                String answer = scanner.nextLine().trim();
+                if (answer.equalsIgnoreCase("q")) {
+                    return;
+                }
+                if (!answer.isEmpty()) {
+                    addSearchHits(pickHits(answer, shown));
+                    return;
                 }
-            } catch (Exception e) {
-                System.out.println("Error while searching for movie: " + e.getMessage());
+                hits = results.nextPage();
             }
+            System.out.println("No more results");
         } else {
             // Movie found in local database, display results
             System.out.println("Results from local database:");
@@ -256,6 +295,85 @@ public class Menu {
         }
     }
 
+    /**
+     * Offers the local movies whose titles are close to a misspelled one, before going to OMDB.
+     * @return the movie the user picked, or an empty array to search OMDB instead
+     */
+    private Movie[] pickCloseMatch(String title) {
+        Movie[] close = database.fuzzySearch(title, SUGGESTIONS);
+        if (close.length == 0) {
+            return close;
+        }
+        System.out.println("Did you mean:");
+        for (int i = 0; i < close.length; i++) {
+            System.out.println((i + 1) + ". " + close[i].getTitle() + " (" + close[i].getYear() + ")");
+        }
+        System.out.println("Enter a number to show that movie, or Enter to search OMDB");
+        String answer = scanner.nextLine().trim();
+        try {
+            int number = Integer.parseInt(answer);
+            if (number >= 1 && number <= close.length) {
+                return new Movie[]{close[number - 1]};
+            }
+        } catch (NumberFormatException e) {
+            // search OMDB
+        }
+        return new Movie[0];
+    }
+
+    /**
+     * Prints the actor and director names close to a name that found nothing.
+     */
+    private void suggestNames(String name) {
+        String[] names = database.suggestNames(name, SUGGESTIONS);
+        if (names.length > 0) {
+            System.out.println("Did you mean: " + String.join(", ", names) + "?");
+        }
+    }
+
+    /**
+     * Returns the hits for a comma-separated list of 1-based numbers, skipping invalid ones.
+     */
+    private List<SearchHit> pickHits(String answer, List<SearchHit> shown) {
+        List<SearchHit> picked = new ArrayList<>();
+        for (String part : answer.split(",")) {
+            try {
+                int number = Integer.parseInt(part.trim());
+                if (number >= 1 && number <= shown.size()) {
+                    picked.add(shown.get(number - 1));
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            System.out.println("Invalid number: " + part.trim());
+        }
+        return picked;
+    }
+
+    /**
+     * Fetches the full details of the picked hits in parallel and saves each movie as it is shown.
+     */
+    private void addSearchHits(List<SearchHit> picked) {
+        List<CompletableFuture<Movie>> details = omdbAPI.getMoviesAsync(picked);
+        for (int i = 0; i < picked.size(); i++) {
+            try {
+                Movie movie = details.get(i).join();
+                if (movie == null) {
+                    System.out.println(picked.get(i).getTitle() + " is no longer available on OMDB");
+                    continue;
+                }
+                displayResult(new Movie[]{movie});
+                database.upsertMovie(movie); // add or refresh movie in database
+                System.out.println("Movie saved to database");
+            } catch (CompletionException e) {
+                System.out.println("Error while fetching " + picked.get(i).getTitle() + ": " + e.getCause().getMessage());
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
 /**   * Displays the results of a movie search.
      * @param movies the movies to display
      */
@@ -303,26 +421,13 @@ public class Menu {
 
 
     private void searchActors(){
-        Scanner scanner = new Scanner(System.in);
-
         System.out.print("Enter actor name: ");
         String actor = scanner.nextLine().trim();
 
-        try {
-            // Retrieve all movies that feature the given actor
-            Movie[] movies = database.getActor( actor);
-
-            // Display the movies to the user
-            if (movies.length == 0) {
-                System.out.println(actor + " has not acted in any movies");
-            } else {
-                System.out.println("Movies featuring " + actor + ":");
-                for (Movie movie : movies) {
-                    System.out.println(movie.getTitle() + " (" + movie.getYear() + ")");
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Error retrieving movies: " + e.getMessage());
+        // Retrieve the movies that feature the given actor one page at a time
+        if (printPaged(offset -> database.getActorSummaries(actor, offset, PAGE_SIZE), "Movies featuring " + actor + ":") == 0) {
+            System.out.println(actor + " has not acted in any movies");
+            suggestNames(actor);
         }
 
     }
@@ -330,26 +435,13 @@ public class Menu {
      * Searches for directors in the database based on the user input of the directors name.
      */
     private void searchDirectors(){
-        Scanner scanner = new Scanner(System.in);
-
         System.out.print("Enter director name: ");
         String director = scanner.nextLine().trim();
 
-        try {
-            // Retrieve all movies directed by the given director
-            Movie[] movies = database.getDirector(director);
-
-            // Display the movies to the user
-            if (movies.length == 0) {
-                System.out.println(director + " has not directed any movies");
-            } else {
-                System.out.println("Movies directed by " + director + ":");
-                for (Movie movie : movies) {
-                    System.out.println(movie.getTitle() + " (" + movie.getYear() + ")");
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Error retrieving movies: " + e.getMessage());
+        // Retrieve the movies directed by the given director one page at a time
+        if (printPaged(offset -> database.getDirectorSummaries(director, offset, PAGE_SIZE), "Movies directed by " + director + ":") == 0) {
+            System.out.println(director + " has not directed any movies");
+            suggestNames(director);
         }
 
 
@@ -359,26 +451,12 @@ public class Menu {
      * Searches for genres in the database based on the user input of the genre.
      */
     private void searchGenres(){
-        Scanner scanner = new Scanner(System.in);
-
         System.out.print("Enter genre: ");
         String genre = scanner.nextLine().trim();
 
-        try {
-            // Retrieve all movies that feature the given genre
-            Movie[] movies = database.getGenre(genre);
-
-            // Display the movies to the user
-            if (movies.length == 0) {
-                System.out.println("No movies found in the " + genre + " genre");
-            } else {
-                System.out.println("Movies in the " + genre + " genre:");
-                for (Movie movie : movies) {
-                    System.out.println(movie.getTitle() + " (" + movie.getYear() + ")");
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Error retrieving movies: " + e.getMessage());
+        // Retrieve the movies that feature the given genre one page at a time
+        if (printPaged(offset -> database.getGenreSummaries(genre, offset, PAGE_SIZE), "Movies in the " + genre + " genre:") == 0) {
+            System.out.println("No movies found in the " + genre + " genre");
         }
 
 
@@ -387,26 +465,12 @@ public class Menu {
      * Searches for years in the database based on the user input of the year.
      */
     private void searchYears(){
-        Scanner scanner = new Scanner(System.in);
-
         System.out.print("Enter year: ");
         String year = scanner.nextLine().trim();
 
-        try {
-            // Retrieve all movies that were released in the given year
-            Movie[] movies = database.getYear(year);
-
-            // Display the movies to the user
-            if (movies.length == 0) {
-                System.out.println("No movies found in " + year);
-            } else {
-                System.out.println("Movies released in " + year + ":");
-                for (Movie movie : movies) {
-                    System.out.println(movie.getTitle() + " (" + movie.getYear() + ")");
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Error retrieving movies: " + e.getMessage());
+        // Retrieve the movies that were released in the given year one page at a time
+        if (printPaged(offset -> database.getYearSummaries(year, offset, PAGE_SIZE), "Movies released in " + year + ":") == 0) {
+            System.out.println("No movies found in " + year);
 
 
     }
@@ -1,55 +1,61 @@
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.annotations.SerializedName;
+import java.io.IOException;
+import com.google.gson.annotations.JsonAdapter;
 
+@JsonAdapter(MovieTypeAdapter.class)
 public class Movie {
-    @SerializedName("Title")
+    // Shared values for the fields that repeat across many movies, see StringDictionary
+    static final StringDictionary YEARS = new StringDictionary();
+    static final StringDictionary RATINGS = new StringDictionary();
+    static final StringDictionary RUNTIMES = new StringDictionary();
+    static final StringDictionary GENRES = new StringDictionary();
+    static final StringDictionary LANGUAGES = new StringDictionary();
+    static final StringDictionary COUNTRIES = new StringDictionary();
+    static final StringDictionary SCORES = new StringDictionary();
+    static final StringDictionary TYPES = new StringDictionary();
+
+    /**
+     * Returned by the numeric getters when OMDB has no value, e.g. "N/A".
+     */
+    public static final int MISSING = -1;
+
+    // Read from and written to OMDB's JSON by MovieTypeAdapter
     private String title;
-    @SerializedName("Year")
     private String year;
-    @SerializedName("Rated")
     private String rated;
-    @SerializedName("Released")
     private String released;
-    @SerializedName("Runtime")
     private String runtime;
-    @SerializedName("Genre")
     private String genre;
-    @SerializedName("Director")
     private String director;
-    @SerializedName("Writer")
     private String writer;
-    @SerializedName("Actors")
     private String actors;
-    @SerializedName("Plot")
     private String plot;
-    @SerializedName("Language")
     private String language;
-    @SerializedName("Country")
     private String country;
-    @SerializedName("Awards")
     private String awards;
-    @SerializedName("Poster")
     private String poster;
-    @SerializedName("Metascore")
     private String metascore;
-    @SerializedName("imdbRating")
     private String imdbRating;
-    @SerializedName("imdbVotes")
     private String imdbVotes;
-    @SerializedName("imdbID")
     private String imdbID;
-    @SerializedName("Type")
     private String type;
 
+    // Parsed once from the strings above, MISSING when OMDB has no value
+    private int yearValue;
+    private int runtimeMinutes;
+    private int metascoreValue;
+    private double imdbRatingValue;
+    private long imdbVotesValue;
+
+    // Set while plot, awards, actors, writer and poster are still to be loaded, see LazyMovieBatch
+    private volatile LazyMovieBatch pendingDetails;
+
 
 
 
     public static Movie fromJson(String json) {
-        Gson gson = new Gson();
         try {
-            return gson.fromJson(json, Movie.class);
-        } catch (JsonSyntaxException e) {
+            return MovieTypeAdapter.INSTANCE.fromJson(json);
+        } catch (IOException | IllegalStateException e) {
             e.printStackTrace();
             return null;
         }
@@ -59,25 +65,58 @@ public class Movie {
                  String director, String writer, String actors, String plot, String language, String country,
                  String awards, String poster, String metascore, String imdbRating, String imdbVotes,
                  String imdbID, String type) {
+        this(title, year, rated, released, runtime, genre, director, writer, actors, plot, language, country,
+                awards, poster, metascore, imdbRating, imdbVotes, imdbID, type,
+                orMissing(OmdbValues.parseYear(year)), orMissing(OmdbValues.parseRuntime(runtime)),
+                orMissing(OmdbValues.parseRating(imdbRating)), orMissing(OmdbValues.parseVotes(imdbVotes)),
+                orMissing(OmdbValues.parseMetascore(metascore)));
+    }
+
+    /**
+     * Creates a movie whose numeric values have already been parsed, as MovieTypeAdapter and
+     * MovieRowMapper do. The values must match the strings; use MISSING where there is none.
+     */
+    Movie(String title, String year, String rated, String released, String runtime, String genre,
+          String director, String writer, String actors, String plot, String language, String country,
+          String awards, String poster, String metascore, String imdbRating, String imdbVotes,
+          String imdbID, String type, int yearValue, int runtimeMinutes, double imdbRatingValue,
+          long imdbVotesValue, int metascoreValue) {
         this.title = title;
-        this.year = year;
-        this.rated = rated;
+        this.year = YEARS.intern(year);
+        this.rated = RATINGS.intern(rated);
         this.released = released;
-        this.runtime = runtime;
-        this.genre = genre;
+        this.runtime = RUNTIMES.intern(runtime);
+        this.genre = GENRES.intern(genre);
         this.director = director;
         this.writer = writer;
         this.actors = actors;
         this.plot = plot;
-        this.language = language;
-        this.country = country;
+        this.language = LANGUAGES.intern(language);
+        this.country = COUNTRIES.intern(country);
         this.awards = awards;
         this.poster = poster;
-        this.metascore = metascore;
-        this.imdbRating = imdbRating;
+        this.metascore = SCORES.intern(metascore);
+        this.imdbRating = SCORES.intern(imdbRating);
         this.imdbVotes = imdbVotes;
         this.imdbID = imdbID;
-        this.type = type;
+        this.type = TYPES.intern(type);
+        this.yearValue = yearValue;
+        this.runtimeMinutes = runtimeMinutes;
+        this.imdbRatingValue = imdbRatingValue;
+        this.imdbVotesValue = imdbVotesValue;
+        this.metascoreValue = metascoreValue;
+    }
+
+    static int orMissing(Integer value) {
+        return value != null ? value : MISSING;
+    }
+
+    static long orMissing(Long value) {
+        return value != null ? value : MISSING;
+    }
+
+    static double orMissing(Double value) {
+        return value != null ? value : MISSING;
     }
 
     public static Movie[] getMovie(String title) {
@@ -85,6 +124,30 @@ public class Movie {
     }
 
 
+    void setPendingDetails(LazyMovieBatch batch) {
+        pendingDetails = batch;
+    }
+
+    /**
+     * Fills in the fields a lazily loaded movie was read without.
+     */
+    void setDetails(String writer, String actors, String plot, String awards, String poster) {
+        this.writer = writer;
+        this.actors = actors;
+        this.plot = plot;
+        this.awards = awards;
+        this.poster = poster;
+        // Cleared last: the volatile write publishes the fields to threads that see it cleared
+        pendingDetails = null;
+    }
+
+    private void loadDetails() {
+        LazyMovieBatch batch = pendingDetails;
+        if (batch != null) {
+            batch.load();
+        }
+    }
+
     public String getTitle() {
         return title;
     }
@@ -93,10 +156,24 @@ public class Movie {
         return imdbRating;
     }
 
+    /**
+     * Returns the rating, e.g. 8.8, or MISSING.
+     */
+    public double getImdbRatingDouble() {
+        return imdbRatingValue;
+    }
+
     public String getImdbVotes() {
         return imdbVotes;
     }
 
+    /**
+     * Returns the vote count, e.g. 1234567 for "1,234,567", or MISSING.
+     */
+    public long getImdbVotesLong() {
+        return imdbVotesValue;
+    }
+
     public String getImdbID() {
         return imdbID;
     }
@@ -107,11 +184,13 @@ public class Movie {
 
 
     public void setImdbRating(String imdbRating) {
-        this.imdbRating = imdbRating;
+        this.imdbRating = SCORES.intern(imdbRating);
+        this.imdbRatingValue = orMissing(OmdbValues.parseRating(imdbRating));
     }
 
     public void setImdbVotes(String imdbVotes) {
         this.imdbVotes = imdbVotes;
+        this.imdbVotesValue = orMissing(OmdbValues.parseVotes(imdbVotes));
     }
 
     public void setImdbID(String imdbID) {
@@ -119,7 +198,7 @@ public class Movie {
     }
 
     public void setType(String type) {
-        this.type = type;
+        this.type = TYPES.intern(type);
     }
 
     public void setTitle(String title) {
@@ -130,8 +209,16 @@ public class Movie {
         return year;
     }
 
+    /**
+     * Returns the first year, e.g. 2012 for "2012-2020", or MISSING.
+     */
+    public int getYearInt() {
+        return yearValue;
+    }
+
     public void setYear(String year) {
-        this.year = year;
+        this.year = YEARS.intern(year);
+        this.yearValue = orMissing(OmdbValues.parseYear(year));
     }
 
     public String getRated() {
@@ -139,7 +226,7 @@ public class Movie {
     }
 
     public void setRated(String rated) {
-        this.rated = rated;
+        this.rated = RATINGS.intern(rated);
     }
 
     public String getReleased() {
@@ -154,8 +241,16 @@ public class Movie {
         return runtime;
     }
 
+    /**
+     * Returns the runtime in minutes, e.g. 142 for "142 min", or MISSING.
+     */
+    public int getRuntimeMinutes() {
+        return runtimeMinutes;
+    }
+
     public void setRuntime(String runtime) {
-        this.runtime = runtime;
+        this.runtime = RUNTIMES.intern(runtime);
+        this.runtimeMinutes = orMissing(OmdbValues.parseRuntime(runtime));
     }
 
     public String getGenre() {
@@ -163,7 +258,7 @@ public class Movie {
     }
 
     public void setGenre(String genre) {
-        this.genre = genre;
+        this.genre = GENRES.intern(genre);
     }
 
     public String getDirector() {
@@ -175,26 +270,32 @@ public class Movie {
     }
 
     public String getWriter() {
+        loadDetails();
         return writer;
     }
 
     public void setWriter(String writer) {
+        loadDetails();
         this.writer = writer;
     }
 
     public String getActors() {
+        loadDetails();
         return actors;
     }
 
     public void setActors(String actors) {
+        loadDetails();
         this.actors = actors;
     }
 
     public String getPlot() {
+        loadDetails();
         return plot;
     }
 
     public void setPlot(String plot) {
+        loadDetails();
         this.plot = plot;
     }
 
@@ -203,7 +304,7 @@ public class Movie {
     }
 
     public void setLanguage(String language) {
-        this.language = language;
+        this.language = LANGUAGES.intern(language);
     }
 
     public String getCountry() {
@@ -211,22 +312,26 @@ public class Movie {
     }
 
     public void setCountry(String country) {
-        this.country = country;
+        this.country = COUNTRIES.intern(country);
     }
 
     public String getAwards() {
+        loadDetails();
         return awards;
     }
 
     public void setAwards(String awards) {
+        loadDetails();
         this.awards = awards;
     }
 
     public String getPoster() {
+        loadDetails();
         return poster;
     }
 
     public void setPoster(String poster) {
+        loadDetails();
         this.poster = poster;
     }
 
@@ -234,14 +339,23 @@ public class Movie {
         return metascore;
     }
 
+    /**
+     * Returns the metascore, or MISSING.
+     */
+    public int getMetascoreInt() {
+        return metascoreValue;
+    }
+
     public void setMetascore(String metascore) {
-        this.metascore = metascore;
+        this.metascore = SCORES.intern(metascore);
+        this.metascoreValue = orMissing(OmdbValues.parseMetascore(metascore));
     }
 
     // Add toString() method to print the fields of the movie object
 
     @Override
     public String toString() {
+        loadDetails();
         return "Movie{" +
                 "title='" + title + '\'' +
                 ", year='" + year + '\'' +
@@ -5,6 +5,6 @@ import java.util.Scanner;
 public interface MovieDatabaseFactory {
     Scanner createScanner();
     SQLite createSQLite(String dbName) throws ClassNotFoundException, SQLException, IOException;
-    OMDBApi createOMDBApi(String apiKey);
+    OMDBApi createOMDBApi(String apiKey, SQLite database);
 }
 
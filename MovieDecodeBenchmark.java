@@ -0,0 +1,152 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Measures how long decoding one OMDB movie answer takes: MovieTypeAdapter reading the body
+ * as a stream, against the two passes OMDBApi used to make, parsing the body into a tree to
+ * check Response and then binding it again with a new reflective Gson.
+ *
+ * Run it with: java MovieDecodeBenchmark [--decodes 300000] [--rounds 3] [--db film.db]
+ * The answers are built from the movies in --db, which is only read, or from synthetic
+ * movies without it, with the Ratings, DVD and BoxOffice fields OMDB adds.
+ */
+public class MovieDecodeBenchmark {
+
+    /**
+     * The fields the reflective Gson bound before MovieTypeAdapter.
+     */
+    private static class ReflectedMovie {
+        @SerializedName("Title") String title;
+        @SerializedName("Year") String year;
+        @SerializedName("Rated") String rated;
+        @SerializedName("Released") String released;
+        @SerializedName("Runtime") String runtime;
+        @SerializedName("Genre") String genre;
+        @SerializedName("Director") String director;
+        @SerializedName("Writer") String writer;
+        @SerializedName("Actors") String actors;
+        @SerializedName("Plot") String plot;
+        @SerializedName("Language") String language;
+        @SerializedName("Country") String country;
+        @SerializedName("Awards") String awards;
+        @SerializedName("Poster") String poster;
+        @SerializedName("Metascore") String metascore;
+        @SerializedName("imdbRating") String imdbRating;
+        @SerializedName("imdbVotes") String imdbVotes;
+        @SerializedName("imdbID") String imdbID;
+        @SerializedName("Type") String type;
+    }
+
+    private static long checksum;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = OmdbStubServer.parseOptions(args);
+        int decodes = Integer.parseInt(options.getOrDefault("decodes", "300000"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "3"));
+
+        List<byte[]> answers = new ArrayList<>();
+        for (Movie movie : options.containsKey("db") ? readMovies(options.get("db")) : syntheticMovies(1000)) {
+            answers.add(answer(movie));
+        }
+        long bytes = 0;
+        for (byte[] answer : answers) {
+            bytes += answer.length;
+        }
+        System.out.println(answers.size() + " answers, " + bytes / answers.size() + " bytes on average");
+
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < decodes; i++) {
+                decodeTwice(answers.get(i % answers.size()));
+            }
+            long twice = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < decodes; i++) {
+                decodeStreaming(answers.get(i % answers.size()));
+            }
+            long streaming = System.nanoTime() - start;
+            System.out.printf("Round %d: tree and reflection %.2f us, MovieTypeAdapter %.2f us per answer (%.1fx)%n",
+                    round, twice / 1e3 / decodes, streaming / 1e3 / decodes, (double) twice / streaming);
+        }
+        System.out.println("Checksum " + checksum);
+    }
+
+    private static void decodeTwice(byte[] answer) {
+        String body = new String(answer, StandardCharsets.UTF_8);
+        JsonObject response = JsonParser.parseString(body).getAsJsonObject();
+        if (response.get("Response").getAsString().equals("True")) {
+            checksum += new Gson().fromJson(body, ReflectedMovie.class).title.length();
+        }
+    }
+
+    private static void decodeStreaming(byte[] answer) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(answer), StandardCharsets.UTF_8))) {
+            Movie movie = MovieTypeAdapter.INSTANCE.read(reader);
+            if (movie != null) {
+                checksum += movie.getTitle().length();
+            }
+        }
+    }
+
+    /**
+     * Returns the movie as OMDB would send it, with the fields Movie does not keep.
+     */
+    private static byte[] answer(Movie movie) {
+        JsonObject json = JsonParser.parseString(MovieTypeAdapter.INSTANCE.toJson(movie)).getAsJsonObject();
+        JsonArray ratings = new JsonArray();
+        JsonObject rating = new JsonObject();
+        rating.addProperty("Source", "Internet Movie Database");
+        rating.addProperty("Value", movie.getImdbRating() + "/10");
+        ratings.add(rating);
+        json.add("Ratings", ratings);
+        json.addProperty("DVD", "N/A");
+        json.addProperty("BoxOffice", "N/A");
+        json.addProperty("Production", "N/A");
+        json.addProperty("Website", "N/A");
+        json.addProperty("Response", "True");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<Movie> readMovies(String path) throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        List<Movie> movies = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+             Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA query_only = ON");
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM movies")) {
+                MovieRowMapper mapper = MovieRowMapper.forResultSet(resultSet);
+                while (resultSet.next()) {
+                    movies.add(mapper.map(resultSet));
+                }
+            }
+        }
+        return movies;
+    }
+
+    private static List<Movie> syntheticMovies(int count) {
+        List<Movie> movies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            movies.add(new Movie("Title " + i, Integer.toString(1950 + i % 70), "PG-13", "01 Jan 2000", (80 + i % 90) + " min",
+                    "Drama, Crime", "Director " + i % 500, "Writer " + i % 700, "Actor " + i % 900 + ", Actor " + i,
+                    "A plot long enough to look like the ones OMDB returns for most movies, " + i + ".",
+                    "English", "United States", "2 wins", "https://m.media-amazon.com/images/" + i + ".jpg",
+                    Integer.toString(i % 100), (i % 10) + ".5", String.format("%,d", i * 7), "tt" + (1000000 + i), "movie"));
+        }
+        return movies;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * The criteria of a movie lookup, combined with AND: any of title, year range, type, genre,
+ * actor, director and minimum rating, plus an order and a limit. Pass it to SQLite.find or
+ * SQLite.findSummaries, which turn it into one parameterized statement.
+ *
+ * <pre>
+ * Movie[] movies = database.find(new MovieFilter().director("Christopher Nolan")
+ *         .years(2000, 2010).minRating(8.0).orderBy(MovieFilter.Sort.RATING).limit(5));
+ * </pre>
+ */
+public class MovieFilter {
+
+    /**
+     * The order of the results. Without one the database picks the cheapest.
+     */
+    public enum Sort {
+        /** By title, then imdbID. */
+        TITLE,
+        /** Oldest first. */
+        YEAR,
+        /** Best rated first. */
+        RATING,
+        /** Most voted first. */
+        VOTES
+    }
+
+    private String title;
+    private Integer fromYear;
+    private Integer toYear;
+    private String type;
+    private String genre;
+    private String actor;
+    private String director;
+    private Double minRating;
+    private Sort sort;
+    private int limit;
+
+    /**
+     * Keeps movies whose title contains the words of title, each word as a prefix when full-text search is available.
+     */
+    public MovieFilter title(String title) {
+        this.title = title;
+        return this;
+    }
+
+    public MovieFilter year(int year) {
+        return years(year, year);
+    }
+
+    /**
+     * Keeps movies first released between the two years, inclusive.
+     */
+    public MovieFilter years(int fromYear, int toYear) {
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+        return this;
+    }
+
+    public MovieFilter fromYear(int fromYear) {
+        this.fromYear = fromYear;
+        return this;
+    }
+
+    public MovieFilter toYear(int toYear) {
+        this.toYear = toYear;
+        return this;
+    }
+
+    /**
+     * Keeps movies of an OMDB type: movie, series or episode.
+     */
+    public MovieFilter type(String type) {
+        this.type = type;
+        return this;
+    }
+
+    public MovieFilter genre(String genre) {
+        this.genre = genre;
+        return this;
+    }
+
+    public MovieFilter actor(String actor) {
+        this.actor = actor;
+        return this;
+    }
+
+    public MovieFilter director(String director) {
+        this.director = director;
+        return this;
+    }
+
+    /**
+     * Keeps movies rated at least minRating on IMDb.
+     */
+    public MovieFilter minRating(double minRating) {
+        this.minRating = minRating;
+        return this;
+    }
+
+    public MovieFilter orderBy(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    /**
+     * Returns at most limit movies; 0 means no limit.
+     */
+    public MovieFilter limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Integer getFromYear() {
+        return fromYear;
+    }
+
+    public Integer getToYear() {
+        return toYear;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public String getDirector() {
+        return director;
+    }
+
+    public Double getMinRating() {
+        return minRating;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
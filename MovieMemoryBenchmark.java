@@ -0,0 +1,122 @@
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the heap a loaded movie takes: Movie, whose repeating fields share their values
+ * through StringDictionary, against an object holding 19 plain String fields. Every value
+ * is a fresh String, as it is when read from the database or from OMDB, and the repeating
+ * fields get realistic numbers of distinct values.
+ *
+ * Run it with: java MovieMemoryBenchmark [--movies 200000]
+ * Give the JVM a fixed heap (e.g. -Xms1g -Xmx1g) so the measurements are comparable.
+ */
+public class MovieMemoryBenchmark {
+
+    private static final String[] GENRES = {"Action", "Adventure", "Drama", "Comedy", "Sci-Fi", "Crime", "Thriller", "Romance", "Horror", "Animation"};
+    private static final String[] LANGUAGES = {"English", "French", "Spanish", "German", "Italian", "Japanese", "Hindi"};
+    private static final String[] COUNTRIES = {"United States", "United Kingdom", "France", "Canada", "Germany", "India", "Japan"};
+    private static final String[] RATED = {"G", "PG", "PG-13", "R", "NC-17", "Not Rated", "N/A", "TV-MA", "TV-14"};
+
+    /**
+     * The layout Movie had before the dictionaries.
+     */
+    private static class PlainMovie {
+        final String title, year, rated, released, runtime, genre, director, writer, actors, plot, language,
+                country, awards, poster, metascore, imdbRating, imdbVotes, imdbID, type;
+
+        PlainMovie(String[] fields) {
+            title = fields[0];
+            year = fields[1];
+            rated = fields[2];
+            released = fields[3];
+            runtime = fields[4];
+            genre = fields[5];
+            director = fields[6];
+            writer = fields[7];
+            actors = fields[8];
+            plot = fields[9];
+            language = fields[10];
+            country = fields[11];
+            awards = fields[12];
+            poster = fields[13];
+            metascore = fields[14];
+            imdbRating = fields[15];
+            imdbVotes = fields[16];
+            imdbID = fields[17];
+            type = fields[18];
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = OmdbStubServer.parseOptions(args);
+        int count = Integer.parseInt(options.getOrDefault("movies", "200000"));
+
+        long plain = bytesPerMovie(count, false);
+        long shared = bytesPerMovie(count, true);
+        System.out.printf("%d movies: plain Strings %d bytes, Movie %d bytes per movie (%.0f%% less)%n",
+                count, plain, shared, 100.0 * (plain - shared) / plain);
+    }
+
+    private static long bytesPerMovie(int count, boolean useMovie) throws InterruptedException {
+        Random random = new Random(1);
+        Object[] kept = new Object[count];
+        long before = usedHeap();
+        for (int n = 0; n < count; n++) {
+            String[] fields = fields(random, n);
+            kept[n] = useMovie
+                    ? new Movie(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], fields[6], fields[7],
+                            fields[8], fields[9], fields[10], fields[11], fields[12], fields[13], fields[14], fields[15],
+                            fields[16], fields[17], fields[18])
+                    : new PlainMovie(fields);
+        }
+        long after = usedHeap();
+        if (kept[count - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / count;
+    }
+
+    /**
+     * Returns the fields of a movie in the order of the Movie constructor, each a new String.
+     */
+    private static String[] fields(Random random, int n) {
+        String[] fields = {
+                "Title " + n,
+                Integer.toString(1920 + random.nextInt(104)),
+                RATED[random.nextInt(RATED.length)],
+                random.nextInt(28) + " Jan " + (1920 + random.nextInt(104)),
+                (70 + random.nextInt(120)) + " min",
+                pick(random, GENRES) + ", " + pick(random, GENRES) + ", " + pick(random, GENRES),
+                "Director " + random.nextInt(20000),
+                "Writer " + random.nextInt(30000),
+                "Actor " + random.nextInt(50000) + ", Actor " + random.nextInt(50000) + ", Actor " + random.nextInt(50000),
+                "A plot about " + n + " that goes on for a while and is unique to this movie.",
+                pick(random, LANGUAGES) + (random.nextBoolean() ? ", " + pick(random, LANGUAGES) : ""),
+                pick(random, COUNTRIES) + (random.nextBoolean() ? ", " + pick(random, COUNTRIES) : ""),
+                random.nextInt(5) + " wins",
+                "https://m.media-amazon.com/images/M/" + n + ".jpg",
+                Integer.toString(20 + random.nextInt(80)),
+                (1 + random.nextInt(9)) + "." + random.nextInt(10),
+                Integer.toString(random.nextInt(2000000)),
+                "tt" + (1000000 + n),
+                random.nextInt(10) < 8 ? "movie" : "series"
+        };
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = new String(fields[i]);
+        }
+        return fields;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiles a MovieFilter into the FROM/WHERE/ORDER BY/LIMIT part of a single parameterized
+ * statement over the movies table. Each filter is matched through the best structure the
+ * database has: the people and genres tables for names, the FTS5 index for words, and the
+ * indexes on the typed year and rating columns for ranges, falling back to LIKE otherwise.
+ *
+ * The statement text depends only on the shape of the filter (which criteria are set, how
+ * each is matched, the order and whether there is a limit), not on its values, so it is
+ * compiled once per shape and reused. The read connections cache the prepared statement
+ * for the same text, so a repeated shape is neither planned nor prepared again.
+ */
+final class MovieQueryPlanner {
+
+    // The criteria in the order they appear in a shape, the WHERE clause and the parameters
+    private static final int TITLE = 0;
+    private static final int FROM_YEAR = 1;
+    private static final int TO_YEAR = 2;
+    private static final int TYPE = 3;
+    private static final int GENRE = 4;
+    private static final int ACTOR = 5;
+    private static final int DIRECTOR = 6;
+    private static final int MIN_RATING = 7;
+    private static final int SORT = 8;
+    private static final int LIMIT = 9;
+
+    // How a criterion is matched
+    private static final char UNSET = '-';
+    private static final char VALUE = 'V';
+    private static final char FULL_TEXT = 'F';
+    private static final char LIKE = 'L';
+    private static final char CREDITS = 'C';
+
+    private static final String FULL_TEXT_MATCH = "movies.rowid IN (SELECT rowid FROM movies_fts WHERE movies_fts MATCH ?)";
+
+    /**
+     * A compiled statement and the values to bind to it.
+     */
+    static final class Plan {
+        final String from;
+        final Object[] parameters;
+
+        Plan(String from, Object[] parameters) {
+            this.from = from;
+            this.parameters = parameters;
+        }
+    }
+
+    private final ConcurrentMap<String, String> plans = new ConcurrentHashMap<>();
+
+    /**
+     * @param fullTextSearch whether the movies_fts index exists
+     * @param creditLookups whether the people and genres tables are filled
+     */
+    Plan plan(MovieFilter filter, boolean fullTextSearch, boolean creditLookups) {
+        char[] shape = new char[LIMIT + 1];
+        List<Object> parameters = new ArrayList<>();
+
+        shape[TITLE] = text(filter.getTitle(), "title", fullTextSearch, false, parameters);
+        shape[FROM_YEAR] = value(filter.getFromYear(), parameters);
+        shape[TO_YEAR] = value(filter.getToYear(), parameters);
+        shape[TYPE] = value(filter.getType(), parameters);
+        shape[GENRE] = text(filter.getGenre(), "genre", fullTextSearch, creditLookups, parameters);
+        shape[ACTOR] = text(filter.getActor(), "actors", fullTextSearch, creditLookups, parameters);
+        shape[DIRECTOR] = text(filter.getDirector(), "director", fullTextSearch, creditLookups, parameters);
+        shape[MIN_RATING] = value(filter.getMinRating(), parameters);
+        shape[SORT] = filter.getSort() == null ? UNSET : (char) ('0' + filter.getSort().ordinal());
+        shape[LIMIT] = value(filter.getLimit() > 0 ? filter.getLimit() : null, parameters);
+
+        String from = plans.computeIfAbsent(new String(shape), this::compile);
+        return new Plan(from, parameters.toArray());
+    }
+
+    private static char value(Object value, List<Object> parameters) {
+        if (value == null) {
+            return UNSET;
+        }
+        parameters.add(value);
+        return VALUE;
+    }
+
+    private static char text(String text, String column, boolean fullTextSearch, boolean creditLookups, List<Object> parameters) {
+        if (text == null || text.trim().isEmpty()) {
+            return UNSET;
+        }
+        if (creditLookups) {
+            parameters.add(text.trim());
+            return CREDITS;
+        }
+        if (fullTextSearch && SQLite.hasSearchTerms(text)) {
+            parameters.add(column + " : (" + SQLite.toFullTextQuery(text) + ")");
+            return FULL_TEXT;
+        }
+        parameters.add("%" + text + "%");
+        return LIKE;
+    }
+
+    private String compile(String shape) {
+        List<String> conditions = new ArrayList<>();
+        switch (shape.charAt(TITLE)) {
+            case FULL_TEXT: conditions.add(FULL_TEXT_MATCH); break;
+            case LIKE: conditions.add("movies.title LIKE ?"); break;
+            default: break;
+        }
+        if (shape.charAt(FROM_YEAR) == VALUE) {
+            conditions.add("movies.yearValue >= ?");
+        }
+        if (shape.charAt(TO_YEAR) == VALUE) {
+            conditions.add("movies.yearValue <= ?");
+        }
+        if (shape.charAt(TYPE) == VALUE) {
+            conditions.add("movies.type = ?");
+        }
+        switch (shape.charAt(GENRE)) {
+            case CREDITS:
+                conditions.add("movies.rowid IN (SELECT movie_genres.movie_id FROM genres " +
+                        "JOIN movie_genres ON movie_genres.genre_id = genres.id WHERE genres.name = ?)");
+                break;
+            case FULL_TEXT: conditions.add(FULL_TEXT_MATCH); break;
+            case LIKE: conditions.add("movies.genre LIKE ?"); break;
+            default: break;
+        }
+        addPerson(conditions, shape.charAt(ACTOR), CreditIndex.ACTOR, "actors");
+        addPerson(conditions, shape.charAt(DIRECTOR), CreditIndex.DIRECTOR, "director");
+        if (shape.charAt(MIN_RATING) == VALUE) {
+            conditions.add("movies.ratingValue >= ?");
+        }
+
+        StringBuilder from = new StringBuilder("FROM movies");
+        if (!conditions.isEmpty()) {
+            from.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (shape.charAt(SORT) != UNSET) {
+            switch (MovieFilter.Sort.values()[shape.charAt(SORT) - '0']) {
+                case TITLE: from.append(" ORDER BY movies.title, movies.imdbID"); break;
+                case YEAR: from.append(" ORDER BY movies.yearValue"); break;
+                case RATING: from.append(" ORDER BY movies.ratingValue DESC"); break;
+                case VOTES: from.append(" ORDER BY movies.votesValue DESC"); break;
+                default: break;
+            }
+        }
+        if (shape.charAt(LIMIT) == VALUE) {
+            from.append(" LIMIT ?");
+        }
+        return from.toString();
+    }
+
+    private static void addPerson(List<String> conditions, char match, String role, String column) {
+        switch (match) {
+            case CREDITS:
+                // The role is a CreditIndex constant, not user input
+                conditions.add("movies.rowid IN (SELECT movie_people.movie_id FROM people " +
+                        "JOIN movie_people ON movie_people.person_id = people.id AND movie_people.role = '" + role + "' " +
+                        "WHERE people.name = ?)");
+                break;
+            case FULL_TEXT: conditions.add(FULL_TEXT_MATCH); break;
+            case LIKE: conditions.add("movies." + column + " LIKE ?"); break;
+            default: break;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Maps rows of the movies table to Movie objects. Column positions are looked up
+ * once from the result set metadata and each row is built with one constructor call.
+ * Fields whose column is not in the query stay null, which lets narrower SELECTs use the
+ * same mapper. The numeric values are taken from the typed columns when the query has
+ * them, so they are not parsed again on every load.
+ *
+ * This is a structural change, not a speed-up: the SQLite driver caches name lookups
+ * itself and reading the text columns dominates, so RowMapperBenchmark shows the same
+ * rows per second as looking every column up by name.
+ */
+public class MovieRowMapper {
+
+    // Column names in the order of the Movie constructor parameters
+    private static final String[] COLUMNS = {
+            "title", "year", "rated", "released", "runtime", "genre", "director", "writer", "actors", "plot",
+            "language", "country", "awards", "poster", "metascore", "imdbRating", "imdbVotes", "imdbID", "type"
+    };
+
+    // The typed copies of year, runtime, imdbRating, imdbVotes and metascore
+    private static final String[] TYPED_COLUMNS = {
+            "yearValue", "runtimeValue", "ratingValue", "votesValue", "metascoreValue"
+    };
+
+    private final int[] indexes;
+    private final int[] typedIndexes;
+
+    private MovieRowMapper(ResultSetMetaData metaData) throws SQLException {
+        indexes = findColumns(metaData, COLUMNS);
+        typedIndexes = findColumns(metaData, TYPED_COLUMNS);
+    }
+
+    private static int[] findColumns(ResultSetMetaData metaData, String[] names) throws SQLException {
+        int[] found = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            found[i] = -1;
+            for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                if (names[i].equalsIgnoreCase(metaData.getColumnLabel(column))) {
+                    found[i] = column;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Creates a mapper for the columns of the given result set.
+     */
+    public static MovieRowMapper forResultSet(ResultSet resultSet) throws SQLException {
+        return new MovieRowMapper(resultSet.getMetaData());
+    }
+
+    public Movie map(ResultSet resultSet) throws SQLException {
+        String year = get(resultSet, 1);
+        String runtime = get(resultSet, 4);
+        String metascore = get(resultSet, 14);
+        String imdbRating = get(resultSet, 15);
+        String imdbVotes = get(resultSet, 16);
+        return new Movie(get(resultSet, 0), year, get(resultSet, 2), get(resultSet, 3),
+                runtime, get(resultSet, 5), get(resultSet, 6), get(resultSet, 7), get(resultSet, 8),
+                get(resultSet, 9), get(resultSet, 10), get(resultSet, 11), get(resultSet, 12), get(resultSet, 13),
+                metascore, imdbRating, imdbVotes, get(resultSet, 17), get(resultSet, 18),
+                typedIndexes[0] > 0 ? getInt(resultSet, typedIndexes[0]) : Movie.orMissing(OmdbValues.parseYear(year)),
+                typedIndexes[1] > 0 ? getInt(resultSet, typedIndexes[1]) : Movie.orMissing(OmdbValues.parseRuntime(runtime)),
+                typedIndexes[2] > 0 ? getDouble(resultSet, typedIndexes[2]) : Movie.orMissing(OmdbValues.parseRating(imdbRating)),
+                typedIndexes[3] > 0 ? getLong(resultSet, typedIndexes[3]) : Movie.orMissing(OmdbValues.parseVotes(imdbVotes)),
+                typedIndexes[4] > 0 ? getInt(resultSet, typedIndexes[4]) : Movie.orMissing(OmdbValues.parseMetascore(metascore)));
+    }
+
+    private static int getInt(ResultSet resultSet, int index) throws SQLException {
+        int value = resultSet.getInt(index);
+        return resultSet.wasNull() ? Movie.MISSING : value;
+    }
+
+    private static long getLong(ResultSet resultSet, int index) throws SQLException {
+        long value = resultSet.getLong(index);
+        return resultSet.wasNull() ? Movie.MISSING : value;
+    }
+
+    private static double getDouble(ResultSet resultSet, int index) throws SQLException {
+        double value = resultSet.getDouble(index);
+        return resultSet.wasNull() ? Movie.MISSING : value;
+    }
+
+    private String get(ResultSet resultSet, int field) throws SQLException {
+        int index = indexes[field];
+        return index > 0 ? resultSet.getString(index) : null;
+    }
+}
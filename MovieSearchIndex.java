@@ -0,0 +1,410 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over the movies table, answering the same questions as the
+ * SQL lookups without touching the database. Each movie gets an internal document number;
+ * every term maps to a sorted int array of the documents containing it.
+ *
+ * Two kinds of terms are indexed. Words of title, actors, director, genre and plot are
+ * folded like the FTS5 unicode61 tokenizer (lower case, no diacritics) and match as prefixes.
+ * Whole actor, director and genre names and the year are indexed as exact values, compared
+ * the way the credit tables compare them (ASCII case-insensitive).
+ *
+ * Results are SQLite rowids in ascending order. A replaced or removed movie's document is
+ * marked deleted; once deleted documents make up a quarter of the index they are dropped
+ * from every posting list and the rest are renumbered, so upserts do not grow it forever.
+ */
+public class MovieSearchIndex {
+
+    public static final String TITLE = "title";
+    public static final String ACTORS = "actors";
+    public static final String DIRECTOR = "director";
+    public static final String GENRE = "genre";
+    public static final String PLOT = "plot";
+
+    private static final String[] FIELDS = {TITLE, ACTORS, DIRECTOR, GENRE, PLOT};
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Term keys start with a one-letter field code; words use ':' and exact values '='
+    private static final Map<String, Character> FIELD_CODES = Map.of(
+            TITLE, 't', ACTORS, 'a', DIRECTOR, 'd', GENRE, 'g', PLOT, 'p');
+
+    // Deleted documents are compacted away once there are this many and they pass MAX_DELETED_SHARE
+    private static final int MIN_COMPACTED = 1024;
+    private static final double MAX_DELETED_SHARE = 0.25;
+
+    private final NavigableMap<String, IntList> postings = new TreeMap<>();
+    private final Map<Long, Integer> documentsByRowid = new HashMap<>();
+    private long[] rowids = new long[1024];
+    private final BitSet deleted = new BitSet();
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex names = new TrigramIndex();
+    private final CompletionIndex completions = new CompletionIndex();
+    private int documents;
+    private int deletedCount;
+    // True while documents were added in ascending rowid order, so results need no sorting
+    private boolean rowidOrder = true;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Indexes a stored movie, replacing what was indexed before for the same rowid.
+     */
+    public void add(long rowid, Movie movie) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(rowid);
+            int document = documents++;
+            if (document == rowids.length) {
+                rowids = Arrays.copyOf(rowids, document * 2);
+            }
+            if (document > 0 && rowid <= rowids[document - 1]) {
+                rowidOrder = false;
+            }
+            rowids[document] = rowid;
+            documentsByRowid.put(rowid, document);
+
+            addWords(document, TITLE, movie.getTitle());
+            addWords(document, ACTORS, movie.getActors());
+            addWords(document, DIRECTOR, movie.getDirector());
+            addWords(document, GENRE, movie.getGenre());
+            addWords(document, PLOT, movie.getPlot());
+            for (String actor : CreditIndex.splitNames(movie.getActors())) {
+                addTerm(document, exactKey(ACTORS, actor));
+                names.add(actor, document);
+            }
+            for (String director : CreditIndex.splitNames(movie.getDirector())) {
+                addTerm(document, exactKey(DIRECTOR, director));
+                names.add(director, document);
+            }
+            if (movie.getTitle() != null) {
+                titles.add(movie.getTitle(), document);
+            }
+            for (String genre : CreditIndex.splitNames(movie.getGenre())) {
+                addTerm(document, exactKey(GENRE, genre));
+            }
+            if (movie.getYear() != null) {
+                addTerm(document, "y=" + movie.getYear());
+            }
+            completions.add(rowid, movie);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long rowid) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(rowid);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of movies in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentsByRowid.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds movies crediting a person as actor (ACTORS) or director (DIRECTOR) by exact name.
+     */
+    public long[] person(String field, String name) {
+        return exact(exactKey(field, name.trim()));
+    }
+
+    public long[] genre(String name) {
+        return exact(exactKey(GENRE, name.trim()));
+    }
+
+    public long[] year(String year) {
+        return exact("y=" + year);
+    }
+
+    /**
+     * Finds movies matching every word of text, each word as a prefix.
+     * @param field the field to search, or null for title, actors, director, genre and plot together
+     */
+    public long[] matchAll(String field, String text) {
+        return match(field, text, true);
+    }
+
+    /**
+     * Finds movies matching at least one word of text, each word as a prefix.
+     * @param field the field to search, or null for title, actors, director, genre and plot together
+     */
+    public long[] matchAny(String field, String text) {
+        return match(field, text, false);
+    }
+
+    /**
+     * Finds movies whose title is close to text, tolerating typos, best match first.
+     * @param limit the maximum number of movies
+     */
+    public long[] fuzzyTitles(String text, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] found = new long[0];
+            for (TrigramIndex.Match match : titles.search(text, limit, TrigramIndex.DEFAULT_MIN_SIMILARITY, this::isLive)) {
+                long[] movies = new long[match.getDocuments().length];
+                for (int i = 0; i < movies.length; i++) {
+                    movies[i] = rowids[match.getDocuments()[i]];
+                }
+                Arrays.sort(movies);
+                int count = Math.min(movies.length, limit - found.length);
+                found = Arrays.copyOf(found, found.length + count);
+                System.arraycopy(movies, 0, found, found.length - count, count);
+                if (found.length == limit) {
+                    break;
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds actor and director names close to text, tolerating typos, best match first.
+     */
+    public List<TrigramIndex.Match> fuzzyNames(String text, int limit) {
+        lock.readLock().lock();
+        try {
+            return names.search(text, limit, TrigramIndex.DEFAULT_MIN_SIMILARITY, this::isLive);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to limit titles, actors and directors with a word starting with prefix, most IMDb votes first.
+     */
+    public List<CompletionIndex.Completion> complete(String prefix, int limit) {
+        return completions.complete(prefix, limit);
+    }
+
+    private boolean isLive(int document) {
+        return !deleted.get(document);
+    }
+
+    private long[] match(String field, String text, boolean all) {
+        List<String> words = tokenize(text);
+        if (words.isEmpty()) {
+            return new long[0];
+        }
+        String[] fields = field != null ? new String[]{field} : FIELDS;
+        lock.readLock().lock();
+        try {
+            BitSet result = null;
+            for (String word : words) {
+                BitSet matches = new BitSet(documents);
+                for (String searched : fields) {
+                    String prefix = FIELD_CODES.get(searched) + ":" + word;
+                    // Every term starting with the prefix sorts between it and prefix + the largest char
+                    for (IntList list : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                        list.addTo(matches);
+                    }
+                }
+                if (result == null) {
+                    result = matches;
+                } else if (all) {
+                    result.and(matches);
+                } else {
+                    result.or(matches);
+                }
+                if (all && result.isEmpty()) {
+                    break;
+                }
+            }
+            result.andNot(deleted);
+            long[] found = new long[result.cardinality()];
+            int i = 0;
+            for (int document = result.nextSetBit(0); document >= 0; document = result.nextSetBit(document + 1)) {
+                found[i++] = rowids[document];
+            }
+            if (!rowidOrder) {
+                Arrays.sort(found);
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long[] exact(String key) {
+        lock.readLock().lock();
+        try {
+            IntList list = postings.get(key);
+            if (list == null) {
+                return new long[0];
+            }
+            long[] found = new long[list.size];
+            int count = 0;
+            for (int i = 0; i < list.size; i++) {
+                int document = list.values[i];
+                if (!deleted.get(document)) {
+                    found[count++] = rowids[document];
+                }
+            }
+            found = Arrays.copyOf(found, count);
+            if (!rowidOrder) {
+                Arrays.sort(found);
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeDocument(long rowid) {
+        Integer document = documentsByRowid.remove(rowid);
+        if (document != null) {
+            deleted.set(document);
+            completions.remove(rowid);
+            deletedCount++;
+            if (deletedCount >= MIN_COMPACTED && deletedCount > documents * MAX_DELETED_SHARE) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Drops the deleted documents and renumbers the others in the same order, so every
+     * posting list stays sorted. Terms and trigram values left without documents go too.
+     */
+    private void compact() {
+        int[] renumbered = new int[documents];
+        int live = 0;
+        for (int document = 0; document < documents; document++) {
+            if (deleted.get(document)) {
+                renumbered[document] = -1;
+            } else {
+                rowids[live] = rowids[document];
+                renumbered[document] = live++;
+            }
+        }
+        postings.values().removeIf(list -> list.renumber(renumbered) == 0);
+        titles.compact(renumbered);
+        names.compact(renumbered);
+        for (Map.Entry<Long, Integer> entry : documentsByRowid.entrySet()) {
+            entry.setValue(renumbered[entry.getValue()]);
+        }
+        rowidOrder = true;
+        for (int document = 1; document < live && rowidOrder; document++) {
+            rowidOrder = rowids[document] > rowids[document - 1];
+        }
+        rowids = Arrays.copyOf(rowids, Math.max(1024, live + live / 2));
+        documents = live;
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    private void addWords(int document, String field, String text) {
+        char code = FIELD_CODES.get(field);
+        for (String word : tokenize(text)) {
+            addTerm(document, code + ":" + word);
+        }
+    }
+
+    private void addTerm(int document, String key) {
+        IntList list = postings.computeIfAbsent(key, k -> new IntList());
+        // A document adds all its terms at once, so a repeated word is always the last entry
+        if (list.size == 0 || list.values[list.size - 1] != document) {
+            list.add(document);
+        }
+    }
+
+    private static String exactKey(String field, String value) {
+        return FIELD_CODES.get(field) + "=" + asciiLowerCase(value);
+    }
+
+    /**
+     * Splits text into words the way the FTS5 unicode61 tokenizer with remove_diacritics does:
+     * runs of letters and digits, lower-cased, with accents removed.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        for (String word : SEPARATORS.split(folded.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // SQLite's NOCASE collation only folds ASCII letters
+    private static String asciiLowerCase(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] += 'a' - 'A';
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A growable array of document numbers in ascending order.
+     */
+    static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Replaces every value v with renumbered[v], dropping those mapped to -1.
+         * The mapping must keep the order of the values it keeps.
+         * @return the new size
+         */
+        int renumber(int[] renumbered) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int value = renumbered[values[i]];
+                if (value >= 0) {
+                    values[count++] = value;
+                }
+            }
+            size = count;
+            if (size < values.length / 4) {
+                values = Arrays.copyOf(values, Math.max(4, size * 2));
+            }
+            return size;
+        }
+
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * The few fields list views show for a movie. Loaded instead of a full Movie so
+ * long text such as the plot, awards and poster URL is not read for every row.
+ */
+public class MovieSummary {
+    private final String imdbID;
+    private final String title;
+    private final String year;
+    private final String type;
+    private final String imdbRating;
+
+    public MovieSummary(String imdbID, String title, String year, String type, String imdbRating) {
+        this.imdbID = imdbID;
+        this.title = title;
+        this.year = year;
+        this.type = type;
+        this.imdbRating = imdbRating;
+    }
+
+    public String getImdbID() {
+        return imdbID;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getYear() {
+        return year;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getImdbRating() {
+        return imdbRating;
+    }
+
+    @Override
+    public String toString() {
+        return "MovieSummary{" +
+                "imdbID='" + imdbID + '\'' +
+                ", title='" + title + '\'' +
+                ", year='" + year + '\'' +
+                ", type='" + type + '\'' +
+                ", imdbRating='" + imdbRating + '\'' +
+                '}';
+    }
+}
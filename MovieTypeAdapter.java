@@ -0,0 +1,118 @@
+import java.io.IOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads and writes a Movie in OMDB's JSON format without reflection, in a single pass.
+ * The Response and Error fields of an OMDB answer are checked while reading, and
+ * fields OMDB sends that Movie does not keep, such as Ratings, are skipped. Year,
+ * runtime, rating, votes and metascore are parsed into Movie's numeric fields on the way in.
+ */
+public class MovieTypeAdapter extends TypeAdapter<Movie> {
+
+    public static final MovieTypeAdapter INSTANCE = new MovieTypeAdapter();
+
+    /**
+     * @return the movie, or null if the value is JSON null or OMDB answered that it does not know the movie
+     * @throws IOException if OMDB answered with any other error, such as a reached request limit
+     */
+    @Override
+    public Movie read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String title = null, year = null, rated = null, released = null, runtime = null, genre = null;
+        String director = null, writer = null, actors = null, plot = null, language = null, country = null;
+        String awards = null, poster = null, metascore = null, imdbRating = null, imdbVotes = null;
+        String imdbID = null, type = null, response = null, error = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "Title": title = readString(in); break;
+                case "Year": year = readString(in); break;
+                case "Rated": rated = readString(in); break;
+                case "Released": released = readString(in); break;
+                case "Runtime": runtime = readString(in); break;
+                case "Genre": genre = readString(in); break;
+                case "Director": director = readString(in); break;
+                case "Writer": writer = readString(in); break;
+                case "Actors": actors = readString(in); break;
+                case "Plot": plot = readString(in); break;
+                case "Language": language = readString(in); break;
+                case "Country": country = readString(in); break;
+                case "Awards": awards = readString(in); break;
+                case "Poster": poster = readString(in); break;
+                case "Metascore": metascore = readString(in); break;
+                case "imdbRating": imdbRating = readString(in); break;
+                case "imdbVotes": imdbVotes = readString(in); break;
+                case "imdbID": imdbID = readString(in); break;
+                case "Type": type = readString(in); break;
+                case "Response": response = readString(in); break;
+                case "Error": error = readString(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        if ("False".equals(response)) {
+            if (isNotFound(error)) {
+                return null;
+            }
+            throw new OmdbException("OMDB error: " + error, 200, false);
+        }
+        // Numbers are parsed here, once, so readers of the movie never re-parse the strings
+        return new Movie(title, year, rated, released, runtime, genre, director, writer, actors, plot,
+                language, country, awards, poster, metascore, imdbRating, imdbVotes, imdbID, type,
+                Movie.orMissing(OmdbValues.parseYear(year)), Movie.orMissing(OmdbValues.parseRuntime(runtime)),
+                Movie.orMissing(OmdbValues.parseRating(imdbRating)), Movie.orMissing(OmdbValues.parseVotes(imdbVotes)),
+                Movie.orMissing(OmdbValues.parseMetascore(metascore)));
+    }
+
+    @Override
+    public void write(JsonWriter out, Movie movie) throws IOException {
+        if (movie == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("Title").value(movie.getTitle());
+        out.name("Year").value(movie.getYear());
+        out.name("Rated").value(movie.getRated());
+        out.name("Released").value(movie.getReleased());
+        out.name("Runtime").value(movie.getRuntime());
+        out.name("Genre").value(movie.getGenre());
+        out.name("Director").value(movie.getDirector());
+        out.name("Writer").value(movie.getWriter());
+        out.name("Actors").value(movie.getActors());
+        out.name("Plot").value(movie.getPlot());
+        out.name("Language").value(movie.getLanguage());
+        out.name("Country").value(movie.getCountry());
+        out.name("Awards").value(movie.getAwards());
+        out.name("Poster").value(movie.getPoster());
+        out.name("Metascore").value(movie.getMetascore());
+        out.name("imdbRating").value(movie.getImdbRating());
+        out.name("imdbVotes").value(movie.getImdbVotes());
+        out.name("imdbID").value(movie.getImdbID());
+        out.name("Type").value(movie.getType());
+        out.endObject();
+    }
+
+    static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return in.nextString();
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        in.skipValue();
+        return null;
+    }
+
+    static boolean isNotFound(String error) {
+        return error == null || error.isEmpty() || error.endsWith("not found!") || error.startsWith("Incorrect IMDb ID");
+    }
+}
@@ -1,94 +1,424 @@
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 
 public class OMDBApi {
 
+    public static final String DEFAULT_BASE_URL = "http://www.omdbapi.com/";
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    // Shared by every OMDBApi using the default timeouts so keep-alive connections are reused
+    private static final HttpClient SHARED_CLIENT = newClient(DEFAULT_CONNECT_TIMEOUT);
+
+    /**
+     * Lets a lookup send its requests, e.g. by taking a rate limiter token. It is asked before
+     * every attempt the circuit breaker lets out, retries included, but not for answers from
+     * the cache or from an identical lookup in flight.
+     */
+    interface RequestPermit {
+        /**
+         * Returns a future completed with true once the request may be sent, or with false to
+         * fail the lookup without sending it. It should not block the calling thread, which
+         * may be one of the HttpClient's.
+         */
+        CompletableFuture<Boolean> acquire();
+    }
+
     private final String apiKey;
+    private final String baseUrl;
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final OmdbResponseCache cache;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    // Lookups sent but not yet answered, so identical concurrent lookups share one request
+    private final ConcurrentMap<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
 
     public OMDBApi(String apiKey) {
+        this(apiKey, (OmdbResponseCache) null);
+    }
+
+    /**
+     * @param cache answers repeated lookups without a request, may be null
+     */
+    public OMDBApi(String apiKey, OmdbResponseCache cache) {
+        this(apiKey, DEFAULT_BASE_URL, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT, cache);
+    }
+
+    public OMDBApi(String apiKey, String baseUrl, Duration connectTimeout, Duration requestTimeout) {
+        this(apiKey, baseUrl, connectTimeout, requestTimeout, null);
+    }
+
+    public OMDBApi(String apiKey, String baseUrl, Duration connectTimeout, Duration requestTimeout, OmdbResponseCache cache) {
+        this(apiKey, baseUrl, connectTimeout, requestTimeout, cache, RetryPolicy.DEFAULT, new CircuitBreaker());
+    }
+
+    /**
+     * @param apiKey the OMDB API key
+     * @param baseUrl the OMDB endpoint, e.g. a local stand-in server
+     * @param connectTimeout how long to wait for a TCP connection
+     * @param requestTimeout how long one attempt may take, from sending the request to reading the whole answer
+     * @param cache answers repeated lookups without a request, may be null
+     * @param retryPolicy when to resend requests that failed with a timeout, a network error or a 5xx/429 status
+     * @param circuitBreaker refuses requests while OMDB keeps failing
+     */
+    public OMDBApi(String apiKey, String baseUrl, Duration connectTimeout, Duration requestTimeout, OmdbResponseCache cache,
+                   RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
         this.apiKey = apiKey;
+        this.baseUrl = baseUrl;
+        this.client = connectTimeout.equals(DEFAULT_CONNECT_TIMEOUT) ? SHARED_CLIENT : newClient(connectTimeout);
+        this.requestTimeout = requestTimeout;
+        this.cache = cache;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
     }
+
+    /**
+     * Returns the response cache, or null if lookups always go to OMDB.
+     */
+    public OmdbResponseCache getCache() {
+        return cache;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private static HttpClient newClient(Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
     public Movie getMovie(String title) {
-        String url = "http://www.omdbapi.com/?apikey=" + apiKey + "&t=" + title;
-        Movie movie = null;
         try {
-            URL api = new URL(url);
-            HttpURLConnection con = (HttpURLConnection) api.openConnection();
-            con.setRequestMethod("GET");
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            StringBuffer content = new StringBuffer();
-            while ((inputLine = in.readLine()) != null) {
-                content.append(inputLine);
+            Movie movie = getMovieAsync(title).join();
+            if (movie == null) {
+                // Movie not found
+                System.out.println("Movie not found");
             }
-            in.close();
-            con.disconnect();
+            return movie;
+        } catch (CompletionException e) {
+            printFailure(e.getCause());
+            return null;
+        }
+    }
 
-            JsonObject response = JsonParser.parseString(content.toString()).getAsJsonObject();
+    public Movie[] getMovie(String title, String year) {
+        Movie movie = await(getMovieAsync(title, year));
+        return movie != null ? new Movie[]{movie} : new Movie[0];
+    }
 
-            if (response.get("Response").getAsString().equals("False")) {
-                // Movie not found
-                System.out.println("Movie not found");
-                return null;
+    public Movie getMovie(String title, String year, String type) {
+        return await(getMovieAsync(title, year, type));
+    }
+
+    /**
+     * Looks up a movie by exact title without blocking the caller.
+     * @return a future completed with the movie, or with null if OMDB does not know the title
+     */
+    public CompletableFuture<Movie> getMovieAsync(String title) {
+        return getMovieAsync(title, null, null);
+    }
+
+    public CompletableFuture<Movie> getMovieAsync(String title, String year) {
+        return getMovieAsync(title, year, null);
+    }
+
+    /**
+     * Looks up a movie by exact title, optionally narrowed by year and type ("movie", "series" or "episode").
+     * Null or empty year and type are left out of the request.
+     */
+    public CompletableFuture<Movie> getMovieAsync(String title, String year, String type) {
+        return request("t=" + encode(title) + optional("y", year) + optional("type", type), MovieTypeAdapter.INSTANCE);
+    }
+
+    /**
+     * Like getMovieAsync(title), but asks permit before sending a request.
+     */
+    CompletableFuture<Movie> getMovieAsync(String title, RequestPermit permit) {
+        return request("t=" + encode(title), MovieTypeAdapter.INSTANCE, permit);
+    }
+
+    public Movie getMovieById(String imdbID) {
+        return await(getMovieByIdAsync(imdbID));
+    }
+
+    /**
+     * Looks up a movie by its IMDb id, e.g. "tt0111161".
+     * @return a future completed with the movie, or with null if OMDB does not know the id
+     */
+    public CompletableFuture<Movie> getMovieByIdAsync(String imdbID) {
+        return request("i=" + encode(imdbID), MovieTypeAdapter.INSTANCE);
+    }
+
+    /**
+     * Like getMovieByIdAsync(imdbID), but asks permit before sending a request.
+     */
+    CompletableFuture<Movie> getMovieByIdAsync(String imdbID, RequestPermit permit) {
+        return request("i=" + encode(imdbID), MovieTypeAdapter.INSTANCE, permit);
+    }
+
+    /**
+     * Searches OMDB for titles containing the given words. Pages are fetched as the results are read.
+     */
+    public SearchResults search(String title) {
+        return search(title, null, null);
+    }
+
+    /**
+     * Searches OMDB for titles containing the given words, optionally narrowed by year and type.
+     * Null or empty year and type are left out of the request.
+     */
+    public SearchResults search(String title, String year, String type) {
+        return new SearchResults(this, title, year, type);
+    }
+
+    /**
+     * Fetches one page of search hits, counting pages from 1.
+     * @return a future completed with the page, which is empty if OMDB found nothing
+     */
+    public CompletableFuture<SearchPage> searchPageAsync(String title, String year, String type, int page) {
+        return request("s=" + encode(title) + optional("y", year) + optional("type", type) + "&page=" + page,
+                SearchPageTypeAdapter.INSTANCE)
+                .thenApply(result -> result != null ? result : SearchPage.EMPTY);
+    }
+
+    /**
+     * Starts fetching the full movie for each hit at once, so the requests run in parallel.
+     * @return one future per hit, in the same order
+     */
+    public List<CompletableFuture<Movie>> getMoviesAsync(Collection<SearchHit> hits) {
+        List<CompletableFuture<Movie>> movies = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            movies.add(getMovieByIdAsync(hit.getImdbID()));
+        }
+        return movies;
+    }
+
+    /**
+     * Sends a lookup, or answers it from the cache. The query doubles as the cache key after
+     * lower-casing, since the values in it are already trimmed and whitespace-collapsed.
+     * A lookup identical to one still in flight waits for that request instead of sending
+     * its own; every waiter gets the same movie or the same error. While the circuit is open,
+     * lookups the cache cannot answer fail at once.
+     */
+    private <T> CompletableFuture<T> request(String query, TypeAdapter<T> adapter) {
+        return request(query, adapter, null);
+    }
+
+    /**
+     * @param permit asked before each request the lookup sends, may be null
+     */
+    private <T> CompletableFuture<T> request(String query, TypeAdapter<T> adapter, RequestPermit permit) {
+        String key = query.toLowerCase(Locale.ROOT);
+        if (cache != null) {
+            OmdbResponseCache.Entry cached = cache.get(key);
+            if (cached != null && cached.isNotFound()) {
+                return CompletableFuture.completedFuture(null);
             }
-            movie = Movie.fromJson(content.toString());
-        } catch (IOException e) {
-            e.printStackTrace();
+            if (cached != null) {
+                try {
+                    return CompletableFuture.completedFuture(adapter.fromJson(cached.getBody()));
+                } catch (IOException | IllegalStateException e) {
+                    // An unreadable entry is treated as a miss and replaced by a fresh answer
+                }
+            }
+        }
+        CompletableFuture<T> lookup = new CompletableFuture<>();
+        @SuppressWarnings("unchecked") // the query decides the adapter, so one key always maps to one type
+        CompletableFuture<T> pending = (CompletableFuture<T>) inFlight.putIfAbsent(key, lookup);
+        if (pending != null) {
+            // copy() so one waiter cancelling its future does not affect the others
+            return pending.copy();
         }
-        return movie;
+        CompletableFuture<T> attempts = new CompletableFuture<>();
+        attempt(query, key, adapter, permit, 0, attempts);
+        attempts.whenComplete((result, error) -> {
+            // Removed before completing, so a lookup arriving afterwards finds the cache entry instead
+            inFlight.remove(key, lookup);
+            if (error != null) {
+                lookup.completeExceptionally(error);
+            } else {
+                lookup.complete(result);
+            }
+        });
+        return lookup.copy();
+    }
+
+    /**
+     * Sends one attempt and, if it fails in a way worth retrying, schedules the next one after a
+     * backoff delay without holding a thread. The outcome of the last attempt completes result.
+     * The permit is asked only once the circuit breaker lets the attempt out, so refused
+     * attempts are not charged and retries are.
+     */
+    private <T> void attempt(String query, String key, TypeAdapter<T> adapter, RequestPermit permit, int retry,
+                             CompletableFuture<T> result) {
+        if (!circuitBreaker.allowRequest()) {
+            result.completeExceptionally(new CompletionException(
+                    new OmdbException("OMDB is unavailable after repeated failures, try again later", 0, false)));
+            return;
+        }
+        if (permit == null) {
+            send(query, key, adapter, permit, retry, result);
+            return;
+        }
+        permit.acquire().whenComplete((permitted, error) -> {
+            if (error == null && permitted) {
+                send(query, key, adapter, permit, retry, result);
+                return;
+            }
+            circuitBreaker.cancelRequest();
+            result.completeExceptionally(new CompletionException(error != null ? error
+                    : new OmdbException("OMDB request quota used up", 0, false)));
+        });
+    }
+
+    private <T> void send(String query, String key, TypeAdapter<T> adapter, RequestPermit permit, int retry,
+                          CompletableFuture<T> result) {
+        send(query, key, adapter).whenComplete((value, error) -> {
+            if (error == null) {
+                circuitBreaker.recordSuccess();
+                result.complete(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!isRetryable(cause)) {
+                // OMDB answered, so it is healthy even though this lookup failed
+                circuitBreaker.recordSuccess();
+                result.completeExceptionally(new CompletionException(cause));
+                return;
+            }
+            circuitBreaker.recordFailure();
+            if (retry >= retryPolicy.getMaxRetries()) {
+                result.completeExceptionally(new CompletionException(cause));
+                return;
+            }
+            CompletableFuture.delayedExecutor(retryPolicy.delayMillis(retry), TimeUnit.MILLISECONDS)
+                    .execute(() -> attempt(query, key, adapter, permit, retry + 1, result));
+        });
     }
 
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof OmdbException) {
+            return ((OmdbException) error).isRetryable();
+        }
+        // Timeouts, refused or reset connections. Answers that arrived, including unreadable
+        // ones, are OmdbExceptions, which retry only for 5xx and 429.
+        return error instanceof IOException || error instanceof TimeoutException;
+    }
 
+    private <T> CompletableFuture<T> send(String query, String key, TypeAdapter<T> adapter) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "?apikey=" + encode(apiKey) + "&" + query))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        CompletableFuture<HttpResponse<InputStream>> exchange = client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<T> answer = exchange
+                .thenApply(response -> {
+                    T value;
+                    try (InputStream body = response.body()) {
+                        if (response.statusCode() != 200) {
+                            throw OmdbException.forStatus(response.statusCode());
+                        }
+                        value = decode(body, adapter);
+                    } catch (MalformedJsonException | EOFException | IllegalStateException e) {
+                        // OMDB did answer, just not with what was asked for, so asking again would not help
+                        throw new CompletionException(new OmdbException(
+                                "OMDB sent an unreadable answer: " + e.getMessage(), response.statusCode(), false));
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                    if (cache != null) {
+                        cache.put(key, value != null ? adapter.toJson(value) : null);
+                    }
+                    return value;
+                })
+                // The request timeout only covers the headers, this also bounds reading the body
+                .orTimeout(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        answer.whenComplete((value, error) -> {
+            if (error instanceof TimeoutException) {
+                abort(exchange);
+            }
+        });
+        return answer;
+    }
 
-    public Movie[] getMovie(String title, String year) {
-        String url = "http://www.omdbapi.com/?apikey=" + apiKey + "&t=" + title + "&y=" + year;
-        Movie movie = null;
+    /**
+     * Stops an exchange that ran out of time, so it neither holds an HttpClient thread blocked
+     * reading the body nor keeps running next to the retry.
+     */
+    private static void abort(CompletableFuture<HttpResponse<InputStream>> exchange) {
+        if (exchange.cancel(true) || exchange.isCompletedExceptionally()) {
+            return;
+        }
+        // The headers had arrived; closing the body makes the blocked read fail at once
         try {
-            URL api = new URL(url);
-            HttpURLConnection con = (HttpURLConnection) api.openConnection();
-            con.setRequestMethod("GET");
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            StringBuffer content = new StringBuffer();
-            while ((inputLine = in.readLine()) != null) {
-                content.append(inputLine);
-            }
-            in.close();
-            con.disconnect();
-            movie = Movie.fromJson(content.toString());
+            exchange.join().body().close();
         } catch (IOException e) {
-            e.printStackTrace();
+            // The exchange is abandoned either way
         }
-        Movie[] movies = new Movie[1];
-        movies[0] = movie;
-        return movies;
     }
 
+    /**
+     * Decodes an answer as it arrives, in one pass and without building the body as a string.
+     * @return the decoded answer, or null if OMDB answered that it found nothing
+     * @throws IOException for any other error answer, such as a reached request limit,
+     *         so that it is neither cached nor mistaken for a missing movie
+     */
+    private static <T> T decode(InputStream body, TypeAdapter<T> adapter) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            return adapter.read(reader);
+        }
+    }
 
-    public Movie getMovie(String title, String year, String type) {
-        String url = "http://www.omdbapi.com/?apikey=" + apiKey + "&t=" + title + "&y=" + year + "&type=" + type;
-        Movie movie = null;
+    /**
+     * Waits for a lookup for the blocking methods. Failures are printed and turned into null,
+     * as the blocking API has always done.
+     */
+    private static Movie await(CompletableFuture<Movie> future) {
         try {
-            URL api = new URL(url);
-            HttpURLConnection con = (HttpURLConnection) api.openConnection();
-            con.setRequestMethod("GET");
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            StringBuffer content = new StringBuffer();
-            while ((inputLine = in.readLine()) != null) {
-                content.append(inputLine);
-            }
-            in.close();
-            con.disconnect();
-            movie = Movie.fromJson(content.toString());
-        } catch (IOException e) {
-            e.printStackTrace();
+            return future.join();
+        } catch (CompletionException e) {
+            printFailure(e.getCause());
+            return null;
         }
-        return movie;
+    }
+
+    static void printFailure(Throwable error) {
+        String reason = error instanceof TimeoutException ? "no answer in time" : error.getMessage();
+        System.out.println("OMDB lookup failed: " + reason);
+    }
+
+    private static String optional(String name, String value) {
+        return value == null || value.isEmpty() ? "" : "&" + name + "=" + encode(value);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value == null ? "" : value.trim().replaceAll("\\s+", " "), StandardCharsets.UTF_8);
     }
 }
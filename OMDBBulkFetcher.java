@@ -0,0 +1,160 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Fetches many titles or IMDb ids from OMDB with a cap on requests in flight and a
+ * token bucket for the per-second rate and daily quota. Results are handed to the
+ * caller as each request completes, not in input order.
+ */
+public class OMDBBulkFetcher {
+
+    public enum Lookup { TITLE, IMDB_ID }
+
+    /**
+     * The outcome of one lookup: a movie, not found (movie and error both null) or an error.
+     */
+    public static class Result {
+        private final String key;
+        private final Movie movie;
+        private final Throwable error;
+
+        Result(String key, Movie movie, Throwable error) {
+            this.key = key;
+            this.movie = movie;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Movie getMovie() {
+            return movie;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isFound() {
+            return movie != null;
+        }
+    }
+
+    private final OMDBApi api;
+    private final int maxConcurrency;
+    private final TokenBucket rateLimiter;
+
+    /**
+     * @param api the client to send requests with
+     * @param maxConcurrency the maximum number of requests in flight at once
+     * @param rateLimiter limits the request rate and daily total
+     */
+    public OMDBBulkFetcher(OMDBApi api, int maxConcurrency, TokenBucket rateLimiter) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.api = api;
+        this.maxConcurrency = maxConcurrency;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Looks up every key and blocks until all lookups have finished. Requests are sent
+     * asynchronously, so no thread is held per request or while waiting for a token; the calling
+     * thread only waits for a free slot. Every request sent takes a token, retries included, while
+     * lookups answered from the response cache or by an identical lookup in flight take none. Once the daily quota is used up the remaining keys that need a request are
+     * reported as failed without being sent.
+     * @param keys the titles or IMDb ids to look up
+     * @param lookup whether the keys are titles or IMDb ids
+     * @param onResult called once per key as its lookup completes, possibly from several threads at once
+     */
+    public void fetch(List<String> keys, Lookup lookup, Consumer<Result> onResult) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxConcurrency);
+        for (String key : keys) {
+            inFlight.acquire();
+            CompletableFuture<Movie> future = null;
+            try {
+                future = lookUp(key, lookup);
+            } finally {
+                if (future == null) {
+                    // The call threw, so no completion will release the permit
+                    inFlight.release();
+                }
+            }
+            future.whenComplete((movie, error) -> {
+                try {
+                    onResult.accept(new Result(key, movie, unwrap(error)));
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        // Wait for the requests still in flight
+        inFlight.acquire(maxConcurrency);
+        inFlight.release(maxConcurrency);
+    }
+
+    /**
+     * Looks up every key and upserts the movies found into the database in batches. Finished
+     * lookups are queued and written by the calling thread, so no HttpClient thread waits for
+     * the database.
+     * @param batchSize how many movies to collect before writing them in one transaction
+     * @param onResult also receives every result, on the calling thread, may be null
+     * @return the combined result of all batches written
+     * @throws SQLException if a batch could not be written; lookups still in flight are then abandoned
+     */
+    public BulkInsertResult fetchInto(SQLite database, List<String> keys, Lookup lookup, int batchSize,
+                                      Consumer<Result> onResult) throws InterruptedException, SQLException {
+        BulkInsertResult total = new BulkInsertResult();
+        List<Movie> pending = new ArrayList<>(batchSize);
+        BlockingQueue<Result> finished = new LinkedBlockingQueue<>();
+        Iterator<String> remaining = keys.iterator();
+        int sent = 0;
+        for (int done = 0; done < keys.size(); done++) {
+            // Keep maxConcurrency lookups in flight, then wait for one of them to finish
+            while (remaining.hasNext() && sent - done < maxConcurrency) {
+                String key = remaining.next();
+                lookUp(key, lookup).whenComplete((movie, error) -> finished.add(new Result(key, movie, unwrap(error))));
+                sent++;
+            }
+            Result result = finished.take();
+            if (onResult != null) {
+                onResult.accept(result);
+            }
+            if (result.isFound()) {
+                pending.add(result.getMovie());
+                if (pending.size() >= batchSize) {
+                    flush(database, pending, total);
+                }
+            }
+        }
+        flush(database, pending, total);
+        return total;
+    }
+
+    private CompletableFuture<Movie> lookUp(String key, Lookup lookup) {
+        return lookup == Lookup.IMDB_ID
+                ? api.getMovieByIdAsync(key, rateLimiter::acquireAsync)
+                : api.getMovieAsync(key, rateLimiter::acquireAsync);
+    }
+
+    private static void flush(SQLite database, List<Movie> pending, BulkInsertResult total) throws SQLException {
+        if (!pending.isEmpty()) {
+            total.add(database.upsertMovies(new ArrayList<>(pending)));
+            pending.clear();
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -0,0 +1,38 @@
+import java.io.IOException;
+
+/**
+ * A failed OMDB lookup that is not a transport error: an HTTP error status, an error
+ * answer such as a reached request limit, or a lookup refused while the circuit is open.
+ */
+public class OmdbException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final boolean retryable;
+
+    /**
+     * @param statusCode the HTTP status, or 0 if no request was sent
+     * @param retryable whether sending the same request again later may succeed
+     */
+    public OmdbException(String message, int statusCode, boolean retryable) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryable = retryable;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * Server errors and 429 Too Many Requests are worth retrying; other statuses are not.
+     */
+    static OmdbException forStatus(int statusCode) {
+        return new OmdbException("OMDB returned HTTP " + statusCode, statusCode, statusCode >= 500 || statusCode == 429);
+    }
+}
@@ -0,0 +1,153 @@
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives OMDBApi at a fixed concurrency and reports throughput and latency percentiles,
+ * to qualify client changes before they reach the real service. By default it starts an
+ * OmdbStubServer in-process; pass --url to load another stand-in instead.
+ *
+ * Run it with: java OmdbLoadTest [--requests 10000] [--concurrency 32] [--warmup 1000]
+ * [--retries 0] [--url http://host:port/] plus any OmdbStubServer option for the in-process stub.
+ * Each request looks up a different movie by imdbID, so the client's coalescing does not hide load.
+ */
+public class OmdbLoadTest {
+
+    private final OMDBApi api;
+    private final List<String> imdbIDs;
+    private final int concurrency;
+
+    public OmdbLoadTest(OMDBApi api, List<String> imdbIDs, int concurrency) {
+        if (imdbIDs.isEmpty()) {
+            throw new IllegalArgumentException("No movies to look up");
+        }
+        this.api = api;
+        this.imdbIDs = imdbIDs;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * The outcome of one run: counts, elapsed time and the sorted latency of every lookup.
+     */
+    public static class Report {
+        private final int found;
+        private final int notFound;
+        private final int failed;
+        private final long elapsedNanos;
+        private final long[] latencies;
+
+        Report(int found, int notFound, int failed, long elapsedNanos, long[] latencies) {
+            this.found = found;
+            this.notFound = notFound;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+        }
+
+        public double getThroughput() {
+            return latencies.length / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * Returns the latency in milliseconds below which the given fraction of lookups finished (nearest rank).
+         */
+        public double percentileMillis(double fraction) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(fraction * latencies.length);
+            return latencies[Math.max(0, Math.min(latencies.length, rank) - 1)] / 1e6;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d lookups in %.2f s: %.1f/s, found=%d, not found=%d, failed=%d, " +
+                            "p50=%.2f ms, p99=%.2f ms, p999=%.2f ms, max=%.2f ms",
+                    latencies.length, elapsedNanos / 1e9, getThroughput(), found, notFound, failed,
+                    percentileMillis(0.50), percentileMillis(0.99), percentileMillis(0.999), percentileMillis(1.0));
+        }
+    }
+
+    /**
+     * Sends the given number of lookups, keeping concurrency of them in flight, and waits for all of them.
+     */
+    public Report run(int requests) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger found = new AtomicInteger();
+        AtomicInteger notFound = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            CompletableFuture<Movie> lookup = api.getMovieByIdAsync(imdbIDs.get(i % imdbIDs.size()));
+            lookup.whenComplete((movie, error) -> {
+                latencies[index] = System.nanoTime() - sent;
+                if (error != null) {
+                    failed.incrementAndGet();
+                } else if (movie == null) {
+                    notFound.incrementAndGet();
+                } else {
+                    found.incrementAndGet();
+                }
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(concurrency);
+        long elapsed = System.nanoTime() - start;
+        inFlight.release(concurrency);
+        Arrays.sort(latencies);
+        return new Report(found.get(), notFound.get(), failed.get(), elapsed, latencies);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = OmdbStubServer.parseOptions(args);
+        int requests = Integer.parseInt(options.getOrDefault("requests", "10000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "1000"));
+        int retries = Integer.parseInt(options.getOrDefault("retries", "0"));
+
+        OmdbStubServer stub = null;
+        String url = options.get("url");
+        List<String> imdbIDs;
+        if (url == null) {
+            options.putIfAbsent("synthetic", Integer.toString(requests + warmup));
+            stub = OmdbStubServer.fromOptions(options, 0);
+            stub.start();
+            url = stub.getBaseUrl();
+            imdbIDs = stub.getImdbIDs();
+        } else {
+            imdbIDs = Arrays.asList(options.getOrDefault("ids", "tt0111161").split(","));
+        }
+
+        RetryPolicy retryPolicy = retries > 0 ? new RetryPolicy(retries, Duration.ofMillis(50), Duration.ofSeconds(1)) : RetryPolicy.NONE;
+        // No response cache, and a breaker that never opens, so every lookup reaches the server
+        OMDBApi api = new OMDBApi("load-test", url, OMDBApi.DEFAULT_CONNECT_TIMEOUT, OMDBApi.DEFAULT_REQUEST_TIMEOUT,
+                null, retryPolicy, new CircuitBreaker(Integer.MAX_VALUE, Duration.ZERO));
+        OmdbLoadTest loadTest = new OmdbLoadTest(api, imdbIDs, concurrency);
+        try {
+            if (warmup > 0) {
+                System.out.println("Warm-up: " + loadTest.run(warmup));
+            }
+            System.out.println("Concurrency " + concurrency + ": " + loadTest.run(requests));
+            if (stub != null) {
+                System.out.println("Stub served " + stub.getRequestCount() + " requests, injected " +
+                        stub.getInjectedErrorCount() + " errors, rate limited " + stub.getRateLimitedCount());
+            }
+        } finally {
+            if (stub != null) {
+                stub.stop();
+            }
+        }
+    }
+}
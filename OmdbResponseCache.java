@@ -0,0 +1,144 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of OMDB response bodies keyed by the normalized request. Recent
+ * responses are kept in an in-memory LRU and every response is also stored in the
+ * omdb_cache table, so lookups repeated after a restart do not spend quota either.
+ * Not-found answers are cached too, with a shorter time to live.
+ */
+public class OmdbResponseCache {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final Duration DEFAULT_TTL = Duration.ofDays(7);
+    public static final Duration DEFAULT_NOT_FOUND_TTL = Duration.ofHours(6);
+
+    /**
+     * A cached answer: the response body, or a null body if OMDB did not find the movie.
+     */
+    public static final class Entry {
+        private final String body;
+        private final long expiresAt;
+
+        public Entry(String body, long expiresAt) {
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public boolean isNotFound() {
+            return body == null;
+        }
+    }
+
+    private final SQLite database;
+    private final Map<String, Entry> entries;
+    private final long ttlMillis;
+    private final long notFoundTtlMillis;
+    private final Clock clock;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param database where responses are persisted, or null to cache in memory only
+     */
+    public OmdbResponseCache(SQLite database) {
+        this(database, DEFAULT_CAPACITY, DEFAULT_TTL, DEFAULT_NOT_FOUND_TTL);
+    }
+
+    public OmdbResponseCache(SQLite database, int capacity, Duration ttl, Duration notFoundTtl) {
+        this(database, capacity, ttl, notFoundTtl, Clock.systemUTC());
+    }
+
+    OmdbResponseCache(SQLite database, int capacity, Duration ttl, Duration notFoundTtl, Clock clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.database = database;
+        this.ttlMillis = ttl.toMillis();
+        this.notFoundTtlMillis = notFoundTtl.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        if (database != null) {
+            database.deleteExpiredResponses(clock.millis());
+        }
+    }
+
+    /**
+     * Returns the unexpired answer for a request, checking memory first and then the database.
+     * @return the cached entry, or null on a miss
+     */
+    public Entry get(String key) {
+        long now = clock.millis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt <= now) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null && database != null) {
+            entry = database.getCachedResponse(key, now);
+            if (entry != null) {
+                synchronized (entries) {
+                    entries.put(key, entry);
+                }
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the answer to a request.
+     * @param body the response body, or null if OMDB did not find the movie
+     */
+    public void put(String key, String body) {
+        Entry entry = new Entry(body, clock.millis() + (body == null ? notFoundTtlMillis : ttlMillis));
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        if (database != null) {
+            database.putCachedResponse(key, body, entry.expiresAt);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OmdbResponseCache{hits=" + hits + ", misses=" + misses + ", size=" + size() + "}";
+    }
+}
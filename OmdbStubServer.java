@@ -0,0 +1,382 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the OMDB API, so OMDBApi can be tested and load-tested without
+ * spending quota. It answers t=, i= and s= requests from recorded movies, either the
+ * movies stored in a database or a directory of OMDB JSON files, and can add latency,
+ * random server errors and request limits.
+ *
+ * Run it with: java OmdbStubServer [--port 8080] [--db film.db] [--fixtures dir]
+ * [--synthetic n] [--latency-ms n] [--jitter-ms n] [--error-rate 0.01] [--rate-limit n] [--daily-limit n]
+ */
+public class OmdbStubServer {
+
+    private static final int SEARCH_PAGE_SIZE = 10;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, String> byId = new ConcurrentHashMap<>();
+    private final Map<String, String> byTitle = new ConcurrentHashMap<>();
+    private final List<Movie> movies = new ArrayList<>();
+
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private volatile double errorRate;
+    private volatile int rateLimit;
+    private volatile long dailyLimit;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    // Requests counted in the current one-second window for the rate limit
+    private long windowStart;
+    private int windowCount;
+
+    /**
+     * @param port the port to listen on, or 0 for any free port
+     */
+    public OmdbStubServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        // Unbounded so injected latency delays requests without limiting how many are served at once
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public synchronized void addMovie(Movie movie) {
+        String json = MovieTypeAdapter.INSTANCE.toJson(movie);
+        String answer = json.substring(0, json.length() - 1) + ",\"Response\":\"True\"}";
+        if (movie.getImdbID() != null) {
+            byId.put(movie.getImdbID().toLowerCase(Locale.ROOT), answer);
+        }
+        if (movie.getTitle() != null) {
+            byTitle.putIfAbsent(normalize(movie.getTitle()), answer);
+        }
+        movies.add(movie);
+    }
+
+    /**
+     * Serves every movie stored in the database.
+     */
+    public void addMovies(SQLite database) throws SQLException {
+        try (Stream<Movie> stored = database.streamAllMovies()) {
+            stored.forEach(this::addMovie);
+        }
+    }
+
+    /**
+     * Serves every movie stored in a database file. The file is opened read-only, so the
+     * database is left exactly as it was, unlike opening it with SQLite, which switches it to WAL.
+     */
+    public void addMovies(String databasePath) throws SQLException {
+        Properties properties = new Properties();
+        // SQLITE_OPEN_READONLY: fails on a missing file instead of creating it
+        properties.setProperty("open_mode", "1");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databasePath, properties);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT * FROM movies")) {
+            MovieRowMapper mapper = MovieRowMapper.forResultSet(resultSet);
+            while (resultSet.next()) {
+                addMovie(mapper.map(resultSet));
+            }
+        }
+    }
+
+    /**
+     * Serves every recorded OMDB answer (*.json) in a directory.
+     */
+    public void addMovies(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : files) {
+                Movie movie = Movie.fromJson(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                if (movie != null) {
+                    addMovie(movie);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds count copies of the movies served so far, each with its own title ("Title #n") and
+     * id (tt9000000 + n), so a load test can look up many distinct movies.
+     */
+    public synchronized void addSyntheticMovies(int count) {
+        List<Movie> templates = new ArrayList<>(movies);
+        if (templates.isEmpty()) {
+            throw new IllegalStateException("Add recorded movies first");
+        }
+        for (int n = 0; n < count; n++) {
+            Movie template = templates.get(n % templates.size());
+            addMovie(new Movie(template.getTitle() + " #" + n, template.getYear(), template.getRated(),
+                    template.getReleased(), template.getRuntime(), template.getGenre(), template.getDirector(),
+                    template.getWriter(), template.getActors(), template.getPlot(), template.getLanguage(),
+                    template.getCountry(), template.getAwards(), template.getPoster(), template.getMetascore(),
+                    template.getImdbRating(), template.getImdbVotes(), "tt" + (9000000 + n), template.getType()));
+        }
+    }
+
+    /**
+     * Returns the imdbIDs of every movie served.
+     */
+    public synchronized List<String> getImdbIDs() {
+        List<String> ids = new ArrayList<>();
+        for (Movie movie : movies) {
+            ids.add(movie.getImdbID());
+        }
+        return ids;
+    }
+
+    /**
+     * Delays every answer by latencyMillis plus a random 0 to jitterMillis.
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Answers this fraction of requests, chosen at random, with 503 Service Unavailable.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Answers requests beyond this many per second with 429 Too Many Requests, or 0 for no limit.
+     */
+    public void setRateLimit(int requestsPerSecond) {
+        this.rateLimit = requestsPerSecond;
+    }
+
+    /**
+     * Answers requests beyond this many in total with 401 and "Request limit reached!", like OMDB
+     * does when a key's daily quota is used up, or 0 for no limit.
+     */
+    public void setDailyLimit(long dailyLimit) {
+        this.dailyLimit = dailyLimit;
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            long count = requests.incrementAndGet();
+            long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (dailyLimit > 0 && count > dailyLimit) {
+                respond(exchange, 401, error("Request limit reached!"));
+            } else if (!withinRateLimit()) {
+                rateLimited.incrementAndGet();
+                respond(exchange, 429, error("Too many requests"));
+            } else if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                respond(exchange, 503, error("Service unavailable"));
+            } else {
+                respond(exchange, 200, answer(parseQuery(exchange.getRequestURI())));
+            }
+        } catch (InterruptedException e) {
+            // Stopped while delaying; answer anyway so the client is not left waiting. The flag is
+            // restored afterwards, since writing with it set would close the connection instead.
+            try {
+                respond(exchange, 503, error("Service unavailable"));
+            } finally {
+                Thread.currentThread().interrupt();
+            }
+        } catch (RuntimeException e) {
+            // Answer rather than drop the connection, so the client sees what went wrong
+            respond(exchange, 500, error("Stub error: " + e));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized boolean withinRateLimit() {
+        if (rateLimit <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (now - windowStart >= 1_000_000_000L) {
+            windowStart = now;
+            windowCount = 0;
+        }
+        return ++windowCount <= rateLimit;
+    }
+
+    private String answer(Map<String, String> query) {
+        String found = null;
+        if (query.containsKey("i")) {
+            found = byId.get(query.get("i").toLowerCase(Locale.ROOT));
+            return found != null ? found : error("Incorrect IMDb ID.");
+        }
+        if (query.containsKey("t")) {
+            found = byTitle.get(normalize(query.get("t")));
+            return found != null ? found : error("Movie not found!");
+        }
+        if (query.containsKey("s")) {
+            int page;
+            try {
+                page = query.containsKey("page") ? Integer.parseInt(query.get("page")) : 1;
+            } catch (NumberFormatException e) {
+                page = 0;
+            }
+            // OMDB accepts pages 1 to 100
+            if (page < 1 || page > 100) {
+                return error("The page you requested is invalid.");
+            }
+            return search(normalize(query.get("s")), page);
+        }
+        return error("Incorrect IMDb ID.");
+    }
+
+    private synchronized String search(String words, int page) {
+        List<Movie> hits = new ArrayList<>();
+        for (Movie movie : movies) {
+            if (movie.getTitle() != null && normalize(movie.getTitle()).contains(words)) {
+                hits.add(movie);
+            }
+        }
+        int from = (page - 1) * SEARCH_PAGE_SIZE;
+        if (hits.isEmpty() || from >= hits.size()) {
+            return error("Movie not found!");
+        }
+        List<SearchHit> pageHits = new ArrayList<>();
+        for (Movie movie : hits.subList(from, Math.min(hits.size(), from + SEARCH_PAGE_SIZE))) {
+            pageHits.add(new SearchHit(movie.getTitle(), movie.getYear(), movie.getImdbID(), movie.getType(), movie.getPoster()));
+        }
+        String json = SearchPageTypeAdapter.INSTANCE.toJson(new SearchPage(pageHits, hits.size()));
+        return json.substring(0, json.length() - 1) + ",\"Response\":\"True\"}";
+    }
+
+    private static String error(String message) {
+        // Built with Gson so quotes and backslashes in exception messages are escaped
+        JsonObject error = new JsonObject();
+        error.addProperty("Response", "False");
+        error.addProperty("Error", message);
+        return error.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    query.put(pair.substring(0, equals), URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static String normalize(String title) {
+        return title.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        OmdbStubServer stub = fromOptions(options, Integer.parseInt(options.getOrDefault("port", "8080")));
+        stub.start();
+        System.out.println("OMDB stub serving " + stub.getImdbIDs().size() + " movies at " + stub.getBaseUrl());
+    }
+
+    /**
+     * Builds a stub from command line options shared with OmdbLoadTest: --db, --fixtures, --synthetic,
+     * --latency-ms, --jitter-ms, --error-rate, --rate-limit and --daily-limit. Without --db or
+     * --fixtures the movies in film.db are served.
+     */
+    static OmdbStubServer fromOptions(Map<String, String> options, int port) throws Exception {
+        OmdbStubServer stub = new OmdbStubServer(port);
+        if (options.containsKey("fixtures")) {
+            stub.addMovies(Paths.get(options.get("fixtures")));
+        } else {
+            stub.addMovies(options.getOrDefault("db", "film.db"));
+        }
+        if (options.containsKey("synthetic")) {
+            stub.addSyntheticMovies(Integer.parseInt(options.get("synthetic")));
+        }
+        stub.setLatency(Long.parseLong(options.getOrDefault("latency-ms", "0")),
+                Long.parseLong(options.getOrDefault("jitter-ms", "0")));
+        stub.setErrorRate(Double.parseDouble(options.getOrDefault("error-rate", "0")));
+        stub.setRateLimit(Integer.parseInt(options.getOrDefault("rate-limit", "0")));
+        stub.setDailyLimit(Long.parseLong(options.getOrDefault("daily-limit", "0")));
+        return stub;
+    }
+
+    /**
+     * Reads "--name value" pairs into a map keyed by name.
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option but got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Parses the numeric values OMDB sends as text, such as "142 min", "2,345,678",
+ * "2012-2020" and "N/A". Each method returns null when there is no usable number.
+ */
+public final class OmdbValues {
+
+    private OmdbValues() {
+    }
+
+    /**
+     * Returns the first year of values like "2012" or "2012-2020".
+     */
+    public static Integer parseYear(String year) {
+        Long value = leadingDigits(year, 4);
+        return value != null ? value.intValue() : null;
+    }
+
+    /**
+     * Returns the minutes in values like "142 min".
+     */
+    public static Integer parseRuntime(String runtime) {
+        Long value = leadingDigits(runtime, 9);
+        return value != null ? value.intValue() : null;
+    }
+
+    public static Integer parseMetascore(String metascore) {
+        Long value = leadingDigits(metascore, 9);
+        return value != null ? value.intValue() : null;
+    }
+
+    /**
+     * Returns the vote count in values like "2,345,678".
+     */
+    public static Long parseVotes(String votes) {
+        if (votes == null) {
+            return null;
+        }
+        return leadingDigits(votes.replace(",", ""), 18);
+    }
+
+    /**
+     * Returns the count in values like "1,234", such as the totalResults of a search.
+     */
+    public static Integer parseCount(String count) {
+        if (count == null) {
+            return null;
+        }
+        Long value = leadingDigits(count.replace(",", ""), 9);
+        return value != null ? value.intValue() : null;
+    }
+
+    public static Double parseRating(String rating) {
+        if (rating == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(rating.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long leadingDigits(String text, int maxDigits) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        int end = 0;
+        while (end < trimmed.length() && end < maxDigits && Character.isDigit(trimmed.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? null : Long.parseLong(trimmed.substring(0, end));
+    }
+}
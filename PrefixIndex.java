@@ -0,0 +1,193 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * An immutable, sorted prefix index from folded keys to completions, answering "the k most
+ * voted completions starting with this prefix". Every word start of a completion's text is a
+ * key, so "pac" finds "Al Pacino". Keys are packed into one char array with an offset per
+ * key, and a segment tree over the votes finds the best entry of any key range, so a lookup
+ * costs two binary searches plus O(k log n) and never walks the whole range.
+ *
+ * Changes are made by merging into a new index, see merge.
+ */
+public final class PrefixIndex {
+
+    public static final PrefixIndex EMPTY = new PrefixIndex(new char[0], new int[]{0}, new CompletionIndex.Completion[0]);
+
+    private final char[] keys;
+    private final int[] offsets;
+    private final CompletionIndex.Completion[] completions;
+    // tree[size + i] is entry i; every inner node holds whichever of its two children has more votes
+    private final int[] tree;
+
+    private PrefixIndex(char[] keys, int[] offsets, CompletionIndex.Completion[] completions) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.completions = completions;
+        int size = completions.length;
+        tree = new int[2 * size];
+        for (int i = 0; i < size; i++) {
+            tree[size + i] = i;
+        }
+        for (int node = size - 1; node > 0; node--) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Builds an index of the given completions.
+     */
+    public static PrefixIndex of(Collection<CompletionIndex.Completion> completions) {
+        return EMPTY.merge(Collections.emptySet(), completions);
+    }
+
+    /**
+     * Returns a new index without the removed completions and with the added ones. The existing
+     * keys are already sorted, so only the added keys are sorted and the two runs are merged.
+     */
+    public PrefixIndex merge(Set<CompletionIndex.Completion> removed, Collection<CompletionIndex.Completion> added) {
+        List<Object[]> addedKeys = new ArrayList<>();
+        for (CompletionIndex.Completion completion : added) {
+            for (String key : wordStarts(completion.getValue())) {
+                addedKeys.add(new Object[]{key, completion});
+            }
+        }
+        addedKeys.sort((a, b) -> ((String) a[0]).compareTo((String) b[0]));
+
+        int capacity = completions.length + addedKeys.size();
+        StringBuilder mergedKeys = new StringBuilder(keys.length);
+        int[] mergedOffsets = new int[capacity + 1];
+        CompletionIndex.Completion[] mergedCompletions = new CompletionIndex.Completion[capacity];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < completions.length || j < addedKeys.size()) {
+            if (i < completions.length && removed.contains(completions[i])) {
+                i++;
+                continue;
+            }
+            boolean takeAdded = i == completions.length
+                    || (j < addedKeys.size() && compareKey(i, (String) addedKeys.get(j)[0]) > 0);
+            if (takeAdded) {
+                mergedKeys.append((String) addedKeys.get(j)[0]);
+                mergedCompletions[count] = (CompletionIndex.Completion) addedKeys.get(j)[1];
+                j++;
+            } else {
+                mergedKeys.append(keys, offsets[i], offsets[i + 1] - offsets[i]);
+                mergedCompletions[count] = completions[i];
+                i++;
+            }
+            mergedOffsets[++count] = mergedKeys.length();
+        }
+        char[] packed = new char[mergedKeys.length()];
+        mergedKeys.getChars(0, packed.length, packed, 0);
+        return new PrefixIndex(packed, Arrays.copyOf(mergedOffsets, count + 1), Arrays.copyOf(mergedCompletions, count));
+    }
+
+    /**
+     * Returns the number of keys, one per word start of every completion.
+     */
+    public int size() {
+        return completions.length;
+    }
+
+    /**
+     * Returns up to limit completions with a key starting with the folded prefix, most votes first.
+     * @param live completions failing this test are skipped
+     */
+    public List<CompletionIndex.Completion> complete(String foldedPrefix, int limit, Predicate<CompletionIndex.Completion> live) {
+        List<CompletionIndex.Completion> found = new ArrayList<>();
+        int from = lowerBound(foldedPrefix);
+        int to = lowerBound(foldedPrefix + Character.MAX_VALUE);
+        if (from >= to || limit < 1) {
+            return found;
+        }
+        // Each queued range is paired with its best entry; taking the best splits the range around it
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> Long.compare(
+                completions[b[0]].getVotes(), completions[a[0]].getVotes()));
+        ranges.add(new int[]{best(from, to), from, to});
+        Set<CompletionIndex.Completion> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        while (!ranges.isEmpty() && found.size() < limit) {
+            int[] range = ranges.poll();
+            int entry = range[0];
+            CompletionIndex.Completion completion = completions[entry];
+            if (seen.add(completion) && live.test(completion)) {
+                found.add(completion);
+            }
+            if (range[1] < entry) {
+                ranges.add(new int[]{best(range[1], entry), range[1], entry});
+            }
+            if (entry + 1 < range[2]) {
+                ranges.add(new int[]{best(entry + 1, range[2]), entry + 1, range[2]});
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the entry with the most votes in [from, to).
+     */
+    private int best(int from, int to) {
+        int size = completions.length;
+        int result = from;
+        for (int low = from + size, high = to + size; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                result = better(result, tree[low++]);
+            }
+            if ((high & 1) == 1) {
+                result = better(result, tree[--high]);
+            }
+        }
+        return result;
+    }
+
+    private int better(int a, int b) {
+        return completions[b].getVotes() > completions[a].getVotes() ? b : a;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = completions.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareKey(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compareKey(int entry, String key) {
+        int start = offsets[entry];
+        int length = offsets[entry + 1] - start;
+        int shared = Math.min(length, key.length());
+        for (int i = 0; i < shared; i++) {
+            int difference = keys[start + i] - key.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length();
+    }
+
+    /**
+     * Returns the folded text starting at each of its words: "al pacino" and "pacino".
+     */
+    static List<String> wordStarts(String text) {
+        List<String> words = MovieSearchIndex.tokenize(text);
+        List<String> starts = new ArrayList<>(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            starts.add(String.join(" ", words.subList(i, words.size())));
+        }
+        return starts;
+    }
+}
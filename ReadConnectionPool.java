@@ -0,0 +1,140 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small pool of query-only connections to one SQLite database. In WAL mode each
+ * connection reads its own snapshot, so queries on different threads run in
+ * parallel with each other and with the single writer connection in SQLite.
+ * Connections are opened lazily and each keeps its own statement cache.
+ */
+public class ReadConnectionPool implements AutoCloseable {
+
+    public static final int DEFAULT_SIZE = 4;
+
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    /**
+     * A borrowed connection. Closing it returns it to the pool.
+     */
+    public class ReadConnection implements AutoCloseable {
+        private final Connection connection;
+        private final StatementCache statements;
+
+        private ReadConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new StatementCache(connection);
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Returns the cached prepared statement for the given SQL on this connection.
+         */
+        public PreparedStatement statement(String sql) throws SQLException {
+            return statements.get(sql);
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        private void closeConnection() {
+            statements.close();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    private final String url;
+    private final int size;
+    private final BlockingQueue<ReadConnection> idle;
+    private int opened;
+    private boolean closed;
+
+    public ReadConnectionPool(String url, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be at least 1");
+        }
+        this.url = url;
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<>(size);
+    }
+
+    /**
+     * Takes an idle connection, opening a new one while the pool is below its size,
+     * and otherwise waits for one to be returned.
+     * @throws SQLException if the pool is closed or no connection became free in time
+     */
+    public ReadConnection borrow() throws SQLException {
+        ReadConnection reader = idle.poll();
+        if (reader != null) {
+            return reader;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            if (opened < size) {
+                reader = new ReadConnection(open());
+                opened++;
+                return reader;
+            }
+        }
+        try {
+            reader = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+        if (reader == null) {
+            throw new SQLException("No read connection available after " + BORROW_TIMEOUT_SECONDS + " seconds");
+        }
+        return reader;
+    }
+
+    private Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA query_only = ON");
+            statement.execute("PRAGMA busy_timeout = " + SQLite.BUSY_TIMEOUT_MILLIS);
+            statement.execute("PRAGMA cache_size = " + SQLite.CACHE_SIZE);
+            statement.execute("PRAGMA mmap_size = " + SQLite.MMAP_SIZE);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    private synchronized void release(ReadConnection reader) {
+        if (closed) {
+            reader.closeConnection();
+        } else {
+            idle.offer(reader);
+        }
+    }
+
+    /**
+     * Closes idle connections now; connections still borrowed are closed when returned.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        ReadConnection reader;
+        while ((reader = idle.poll()) != null) {
+            reader.closeConnection();
+        }
+    }
+}
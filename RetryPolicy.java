@@ -0,0 +1,44 @@
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How often and how long to wait before resending a failed OMDB request. Delays grow
+ * exponentially from the base delay up to the maximum, and each delay is drawn at random
+ * between zero and that bound ("full jitter") so clients that failed together do not
+ * retry together.
+ */
+public class RetryPolicy {
+
+    public static final RetryPolicy DEFAULT = new RetryPolicy(2, Duration.ofMillis(250), Duration.ofSeconds(2));
+    public static final RetryPolicy NONE = new RetryPolicy(0, Duration.ZERO, Duration.ZERO);
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxRetries how many times a request is resent after the first attempt
+     * @param baseDelay the upper bound of the delay before the first retry
+     * @param maxDelay the cap on the delay bound as it doubles
+     */
+    public RetryPolicy(int maxRetries, Duration baseDelay, Duration maxDelay) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        }
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Returns a random delay before retry number retry, counting from 0.
+     */
+    public long delayMillis(int retry) {
+        long bound = Math.min(maxDelayMillis, baseDelayMillis << Math.min(retry, 30));
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+    }
+}
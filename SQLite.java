@@ -1,18 +1,95 @@
 import java.sql.*;
+import com.google.gson.JsonArray;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
-public class SQLite {
+public class SQLite implements AutoCloseable {
 
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int STREAM_FETCH_SIZE = 200;
+
+    static final int BUSY_TIMEOUT_MILLIS = 5000;
+    static final int CACHE_SIZE = -16000; // negative means KiB, so 16 MB of page cache per connection
+    static final long MMAP_SIZE = 256L * 1024 * 1024;
+    static final int LAZY_BATCH_SIZE = 200;
+
+    private static final String MOVIE_COLUMNS = "movies.*";
+    // Every column but writer, actors, plot, awards and poster, which LazyMovieBatch loads on first use
+    private static final String CORE_COLUMNS = "movies.title, movies.released, movies.year, movies.imdbID, movies.type, " +
+            "movies.runtime, movies.genre, movies.director, movies.language, movies.country, movies.rated, " +
+            "movies.metascore, movies.imdbRating, movies.imdbVotes, movies.yearValue, movies.runtimeValue, " +
+            "movies.ratingValue, movies.votesValue, movies.metascoreValue";
+    private static final String SUMMARY_COLUMNS = "movies.imdbID, movies.title, movies.year, movies.type, movies.imdbRating";
+
+    private static final String INSERT_MOVIE = "INSERT INTO movies (title, released, year, imdbID, type, poster, runtime, genre, director, writer, actors, plot, language, country, awards, rated, metascore, imdbRating, imdbVotes, yearValue, runtimeValue, ratingValue, votesValue, metascoreValue) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPSERT_MOVIE = INSERT_MOVIE + " ON CONFLICT (imdbID) DO UPDATE SET " +
+            "title = excluded.title, released = excluded.released, year = excluded.year, type = excluded.type, " +
+            "poster = excluded.poster, runtime = excluded.runtime, genre = excluded.genre, director = excluded.director, " +
+            "writer = excluded.writer, actors = excluded.actors, plot = excluded.plot, language = excluded.language, " +
+            "country = excluded.country, awards = excluded.awards, rated = excluded.rated, metascore = excluded.metascore, " +
+            "imdbRating = excluded.imdbRating, imdbVotes = excluded.imdbVotes, yearValue = excluded.yearValue, " +
+            "runtimeValue = excluded.runtimeValue, ratingValue = excluded.ratingValue, votesValue = excluded.votesValue, " +
+            "metascoreValue = excluded.metascoreValue";
+
+    // Writes read back the rowid they wrote, since an upsert keeps the rowid of the row it updates
+    private static final String INSERT_MOVIE_ROWID = INSERT_MOVIE + " RETURNING rowid";
+    private static final String UPSERT_MOVIE_ROWID = UPSERT_MOVIE + " RETURNING rowid";
+
+    // The connection and statement cache below belong to the single writer and are only used
+    // while holding this object's monitor. Queries go through the read pool instead.
     private Connection connection;
+    private StatementCache statements;
+    private ReadConnectionPool readers;
+    private SchemaInfo schemaInfo;
+    private CreditIndex credits;
+    private volatile boolean fullTextSearch;
+    private volatile boolean creditLookups;
+    private volatile boolean lazyDetails;
+    private volatile MovieSearchIndex searchIndex;
+    private final MovieQueryPlanner planner = new MovieQueryPlanner();
+    // Rows written by the open transaction, added to the search index once it commits
+    private final List<IndexUpdate> pendingIndexUpdates = new ArrayList<>();
 
     public SQLite(String database) throws SQLException, ClassNotFoundException {
+        this(database, ReadConnectionPool.DEFAULT_SIZE);
+    }
+
+    /**
+     * Opens the database in WAL mode with one writer connection and up to readConnections
+     * query-only connections, so queries from several threads run in parallel and are not
+     * blocked by a write in progress. All public methods are safe to call from any thread.
+     */
+    public SQLite(String database, int readConnections) throws SQLException, ClassNotFoundException {
         Class.forName("org.sqlite.JDBC"); // Load the JDBC driver for SQLite
-        connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+        String url = "jdbc:sqlite:" + database;
+        connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode = WAL");
+            // In WAL mode NORMAL only syncs at checkpoints and stays safe against corruption
+            statement.execute("PRAGMA synchronous = NORMAL");
+            statement.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
+            statement.execute("PRAGMA cache_size = " + CACHE_SIZE);
+            statement.execute("PRAGMA mmap_size = " + MMAP_SIZE);
+        }
+        statements = new StatementCache(connection);
+        readers = new ReadConnectionPool(url, readConnections);
+        schemaInfo = new SchemaInfo(statements);
+        credits = new CreditIndex(connection, statements, schemaInfo);
     }
 
-    public void createMoviesTable() throws SQLException {
+    public synchronized void createMoviesTable() throws SQLException {
         String query = "CREATE TABLE IF NOT EXISTS movies ( " +
                 "title TEXT, " +
                 "released TEXT, " +
@@ -32,7 +109,12 @@ public class SQLite {
                 "rated TEXT, " +
                 "metascore TEXT, " +
                 "imdbRating TEXT, " +
-                "imdbVotes TEXT" +
+                "imdbVotes TEXT, " +
+                "yearValue INTEGER, " +
+                "runtimeValue INTEGER, " +
+                "ratingValue REAL, " +
+                "votesValue INTEGER, " +
+                "metascoreValue INTEGER" +
                 ")";
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.executeUpdate();
@@ -40,32 +122,181 @@ public class SQLite {
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
+        schemaInfo.createTable();
+        createTypedColumns();
+        createKeyIndexes();
+        createFullTextIndex();
+        createCreditIndex();
+        createResponseCacheTable();
     }
 
+    /**
+     * Adds the numeric copies of year, runtime, rating, votes and metascore to databases created
+     * before they existed, fills them from the text columns and indexes them for range queries.
+     */
+    private void createTypedColumns() {
+        try (Statement statement = connection.createStatement()) {
+            boolean missing = true;
+            try (ResultSet resultSet = statement.executeQuery("PRAGMA table_info(movies)")) {
+                while (resultSet.next()) {
+                    if (resultSet.getString("name").equals("yearValue")) {
+                        missing = false;
+                    }
+                }
+            }
+            if (missing) {
+                statement.executeUpdate("ALTER TABLE movies ADD COLUMN yearValue INTEGER");
+                statement.executeUpdate("ALTER TABLE movies ADD COLUMN runtimeValue INTEGER");
+                statement.executeUpdate("ALTER TABLE movies ADD COLUMN ratingValue REAL");
+                statement.executeUpdate("ALTER TABLE movies ADD COLUMN votesValue INTEGER");
+                statement.executeUpdate("ALTER TABLE movies ADD COLUMN metascoreValue INTEGER");
+            }
+            if (schemaInfo.get("typed_columns_filled", 0) == 0) {
+                fillTypedColumns();
+            }
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS movies_year ON movies (yearValue)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS movies_runtime ON movies (runtimeValue)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS movies_rating ON movies (ratingValue)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS movies_votes ON movies (votesValue)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS movies_metascore ON movies (metascoreValue)");
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
-    public void addMovie(Movie movie) throws SQLException {
+    /**
+     * Makes imdbID the unique key of the movies table and indexes (title, imdbID) for paging in
+     * title order. Duplicates left by older versions are removed first, keeping the most recently
+     * added copy of each movie.
+     */
+    private void createKeyIndexes() {
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement("INSERT INTO movies (title, released, year, imdbID, type, poster, runtime, genre, director, writer, actors, plot, language, country, awards, rated, metascore, imdbRating, imdbVotes) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
-            preparedStatement.setString(1, movie.getTitle());
-            preparedStatement.setString(2, movie.getReleased());
-            preparedStatement.setString(3, movie.getYear());
-            preparedStatement.setString(4, movie.getImdbID());
-            preparedStatement.setString(5, movie.getType());
-            preparedStatement.setString(6, movie.getPoster());
-            preparedStatement.setString(7, movie.getRuntime());
-            preparedStatement.setString(8, movie.getGenre());
-            preparedStatement.setString(9, movie.getDirector());
-            preparedStatement.setString(10, movie.getWriter());
-            preparedStatement.setString(11, movie.getActors());
-            preparedStatement.setString(12, movie.getPlot());
-            preparedStatement.setString(13, movie.getLanguage());
-            preparedStatement.setString(14, movie.getCountry());
-            preparedStatement.setString(15, movie.getAwards());
-            preparedStatement.setString(16, movie.getRated());
-            preparedStatement.setString(17, movie.getMetascore());
-            preparedStatement.setString(18, movie.getImdbRating());
-            preparedStatement.setString(19, movie.getImdbVotes());
-            preparedStatement.executeUpdate();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM movies WHERE imdbID IS NOT NULL AND rowid NOT IN " +
+                        "(SELECT MAX(rowid) FROM movies WHERE imdbID IS NOT NULL GROUP BY imdbID)");
+                statement.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS movies_imdbID ON movies (imdbID)");
+                statement.executeUpdate("CREATE INDEX IF NOT EXISTS movies_title ON movies (title, imdbID)");
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void fillTypedColumns() throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement select = connection.createStatement();
+             ResultSet resultSet = select.executeQuery("SELECT rowid, year, runtime, imdbRating, imdbVotes, metascore FROM movies")) {
+            PreparedStatement update = statements.get("UPDATE movies SET yearValue = ?, runtimeValue = ?, " +
+                    "ratingValue = ?, votesValue = ?, metascoreValue = ? WHERE rowid = ?");
+            while (resultSet.next()) {
+                update.setObject(1, OmdbValues.parseYear(resultSet.getString("year")));
+                update.setObject(2, OmdbValues.parseRuntime(resultSet.getString("runtime")));
+                update.setObject(3, OmdbValues.parseRating(resultSet.getString("imdbRating")));
+                update.setObject(4, OmdbValues.parseVotes(resultSet.getString("imdbVotes")));
+                update.setObject(5, OmdbValues.parseMetascore(resultSet.getString("metascore")));
+                update.setLong(6, resultSet.getLong(1));
+                update.addBatch();
+            }
+            update.executeBatch();
+            schemaInfo.set("typed_columns_filled", 1);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Creates the table OmdbResponseCache persists OMDB responses in. A null body records
+     * that OMDB did not find the movie.
+     */
+    private void createResponseCacheTable() {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS omdb_cache ( " +
+                    "request TEXT PRIMARY KEY, " +
+                    "body TEXT, " +
+                    "expires_at INTEGER NOT NULL)");
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the normalized people and genre tables and migrates existing movies into them.
+     * Until the migration has finished, actor, director and genre lookups use the text search.
+     */
+    private void createCreditIndex() {
+        try {
+            credits.createTables();
+            creditLookups = credits.migrate();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+            creditLookups = false;
+        }
+    }
+
+    /**
+     * Creates the FTS5 index over title, actors, director, genre and plot and the triggers that
+     * keep it in sync with the movies table. A database created before the index existed is
+     * indexed once here. If FTS5 is unavailable the search methods keep using LIKE scans.
+     */
+    private void createFullTextIndex() {
+        try (Statement statement = connection.createStatement()) {
+            boolean exists;
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'movies_fts'")) {
+                exists = resultSet.next();
+            }
+            statement.executeUpdate("CREATE VIRTUAL TABLE IF NOT EXISTS movies_fts USING fts5(" +
+                    "title, actors, director, genre, plot, " +
+                    "content='movies', content_rowid='rowid', tokenize='unicode61 remove_diacritics 2')");
+            statement.executeUpdate("CREATE TRIGGER IF NOT EXISTS movies_fts_insert AFTER INSERT ON movies BEGIN " +
+                    "INSERT INTO movies_fts(rowid, title, actors, director, genre, plot) " +
+                    "VALUES (new.rowid, new.title, new.actors, new.director, new.genre, new.plot); END");
+            statement.executeUpdate("CREATE TRIGGER IF NOT EXISTS movies_fts_delete AFTER DELETE ON movies BEGIN " +
+                    "INSERT INTO movies_fts(movies_fts, rowid, title, actors, director, genre, plot) " +
+                    "VALUES ('delete', old.rowid, old.title, old.actors, old.director, old.genre, old.plot); END");
+            statement.executeUpdate("CREATE TRIGGER IF NOT EXISTS movies_fts_update " +
+                    "AFTER UPDATE OF title, actors, director, genre, plot ON movies BEGIN " +
+                    "INSERT INTO movies_fts(movies_fts, rowid, title, actors, director, genre, plot) " +
+                    "VALUES ('delete', old.rowid, old.title, old.actors, old.director, old.genre, old.plot); " +
+                    "INSERT INTO movies_fts(rowid, title, actors, director, genre, plot) " +
+                    "VALUES (new.rowid, new.title, new.actors, new.director, new.genre, new.plot); END");
+            if (!exists) {
+                statement.executeUpdate("INSERT INTO movies_fts(movies_fts) VALUES ('rebuild')");
+            }
+            fullTextSearch = true;
+        } catch (SQLException e) {
+            System.out.println("Full-text search unavailable: " + e.getMessage());
+            fullTextSearch = false;
+        }
+    }
+
+
+    public synchronized void addMovie(Movie movie) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                writeMovie(movie, false);
+                commit();
+            } catch (SQLException e) {
+                rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
             System.out.println("Movie added successfully");
         } catch (SQLException e) {
             if (e.getErrorCode() == 19) {
@@ -76,176 +307,991 @@ public class SQLite {
         }
     }
 
-    public Movie[] getMovie(String title) throws SQLException {
+    /**
+     * Inserts a movie, or refreshes the stored copy in place if its imdbID is already present.
+     * @throws SQLException if the movie has no imdbID or cannot be written
+     */
+    public synchronized void upsertMovie(Movie movie) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM movies WHERE title LIKE ?");
-            preparedStatement.setString(1, "%" + title + "%");
-            ResultSet resultSet = preparedStatement.executeQuery();
-            List<Movie> movies = new ArrayList<>();
-            while (resultSet.next()) {
-                Movie movie = createMovieFromResultSet(resultSet);
-                movies.add(movie);
-            }
-            return movies.toArray(new Movie[0]);
+            writeMovie(movie, true);
+            commit();
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
-            return new Movie[0];
+            rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
         }
     }
 
+    public BulkInsertResult addMovies(Collection<Movie> movies) throws SQLException {
+        return addMovies(movies.iterator(), DEFAULT_BATCH_SIZE, null);
+    }
 
+    public BulkInsertResult upsertMovies(Collection<Movie> movies) throws SQLException {
+        return upsertMovies(movies.iterator(), DEFAULT_BATCH_SIZE, null);
+    }
 
+    /**
+     * Inserts movies in batches, committing one transaction per batch instead of one per row.
+     * If a batch fails it is rolled back and replayed row by row so only the offending movies
+     * are reported as failures. Nothing is printed; progress goes to the listener.
+     * @param movies the movies to insert
+     * @param batchSize the number of rows per transaction
+     * @param listener receives per-batch progress and per-row failures, may be null
+     * @return the number of inserted rows and the failures
+     * @throws SQLException if a transaction cannot be committed or rolled back
+     */
+    public BulkInsertResult addMovies(Iterator<Movie> movies, int batchSize, BulkInsertListener listener) throws SQLException {
+        return writeMovies(movies, batchSize, listener, false);
+    }
 
+    /**
+     * Same as addMovies, but movies whose imdbID is already stored are updated in place
+     * instead of failing, so a re-import refreshes existing rows.
+     */
+    public BulkInsertResult upsertMovies(Iterator<Movie> movies, int batchSize, BulkInsertListener listener) throws SQLException {
+        return writeMovies(movies, batchSize, listener, true);
+    }
 
+    private synchronized BulkInsertResult writeMovies(Iterator<Movie> movies, int batchSize, BulkInsertListener listener,
+                                         boolean upsert) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        BulkInsertListener progress = listener != null ? listener : new BulkInsertListener() { };
+        BulkInsertResult result = new BulkInsertResult();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            List<Movie> batch = new ArrayList<>(batchSize);
+            while (movies.hasNext()) {
+                batch.add(movies.next());
+                if (batch.size() == batchSize || !movies.hasNext()) {
+                    int rows = writeBatch(batch, upsert, result, progress);
+                    commit();
+                    result.addInserted(rows);
+                    result.addBatch();
+                    progress.batchCommitted(result.getBatches(), rows, result.getInserted());
+                    batch.clear();
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return result;
+    }
 
-    public Movie[] getMovie(String title, String year)  {
+    private int writeBatch(List<Movie> batch, boolean upsert, BulkInsertResult result,
+                           BulkInsertListener progress) throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        int pending = pendingIndexUpdates.size();
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM movies WHERE title LIKE ? AND year = ?");
-            preparedStatement.setString(1, "%" + title + "%");
-            preparedStatement.setString(2, year);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            List<Movie> movies = new ArrayList<>();
-            while (resultSet.next()) {
-                Movie movie = createMovieFromResultSet(resultSet);
-                movies.add(movie);
+            for (Movie movie : batch) {
+                writeMovie(movie, upsert);
             }
-            return movies.toArray(new Movie[0]);
+            return batch.size();
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
-            return new Movie[0];
+            connection.rollback(savepoint);
+            discardIndexUpdates(pending);
         }
+        // Replay the failed batch one row at a time to find the bad rows
+        int rows = 0;
+        for (Movie movie : batch) {
+            Savepoint row = connection.setSavepoint();
+            int rowPending = pendingIndexUpdates.size();
+            try {
+                writeMovie(movie, upsert);
+                rows++;
+            } catch (SQLException e) {
+                connection.rollback(row);
+                discardIndexUpdates(rowPending);
+                result.addFailure(movie, e);
+                progress.rowFailed(movie, e);
+            }
+        }
+        return rows;
     }
 
+    /**
+     * Inserts or upserts one movie and links its credits. The caller owns the transaction.
+     */
+    private void writeMovie(Movie movie, boolean upsert) throws SQLException {
+        if (upsert) {
+            requireImdbId(movie);
+        }
+        PreparedStatement preparedStatement = statements.get(upsert ? UPSERT_MOVIE_ROWID : INSERT_MOVIE_ROWID);
+        bindMovie(preparedStatement, movie);
+        long rowid;
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new SQLException("No row written for " + movie.getTitle());
+            }
+            rowid = resultSet.getLong(1);
+        }
+        if (upsert) {
+            reindexCredits(rowid, movie);
+        } else {
+            indexMovie(rowid, movie);
+        }
+    }
 
+    private void reindexCredits(long rowid, Movie movie) throws SQLException {
+        credits.unindex(rowid);
+        indexMovie(rowid, movie);
+    }
 
-    public Movie[] getMovie(String title, String year, String type) throws SQLException {
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM movies WHERE title LIKE ? AND year LIKE ? AND type LIKE ?\n");
-            preparedStatement.setString(1, title);
-            preparedStatement.setString(2, year);
-            preparedStatement.setString(3, type);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            List<Movie> movies = new ArrayList<>();
-            while (resultSet.next()) {
-                Movie movie = createMovieFromResultSet(resultSet);
-                movies.add(movie);
+    /**
+     * Links the credits of a written row and queues it for the search index.
+     */
+    private void indexMovie(long rowid, Movie movie) throws SQLException {
+        credits.index(rowid, movie);
+        if (searchIndex != null) {
+            pendingIndexUpdates.add(new IndexUpdate(rowid, movie));
+        }
+    }
+
+    private void commit() throws SQLException {
+        connection.commit();
+        MovieSearchIndex index = searchIndex;
+        if (index != null) {
+            for (IndexUpdate update : pendingIndexUpdates) {
+                index.add(update.rowid, update.movie);
             }
-            return movies.toArray(new Movie[0]);
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-            return new Movie[0];
         }
+        pendingIndexUpdates.clear();
+    }
+
+    private void rollback() throws SQLException {
+        pendingIndexUpdates.clear();
+        connection.rollback();
+    }
+
+    private void discardIndexUpdates(int keep) {
+        pendingIndexUpdates.subList(keep, pendingIndexUpdates.size()).clear();
+    }
+
+    private static void requireImdbId(Movie movie) throws SQLException {
+        if (movie.getImdbID() == null || movie.getImdbID().isEmpty()) {
+            throw new SQLException("Cannot upsert a movie without an imdbID: " + movie.getTitle());
+        }
+    }
+
+    private void bindMovie(PreparedStatement preparedStatement, Movie movie) throws SQLException {
+        preparedStatement.setString(1, movie.getTitle());
+        preparedStatement.setString(2, movie.getReleased());
+        preparedStatement.setString(3, movie.getYear());
+        preparedStatement.setString(4, movie.getImdbID());
+        preparedStatement.setString(5, movie.getType());
+        preparedStatement.setString(6, movie.getPoster());
+        preparedStatement.setString(7, movie.getRuntime());
+        preparedStatement.setString(8, movie.getGenre());
+        preparedStatement.setString(9, movie.getDirector());
+        preparedStatement.setString(10, movie.getWriter());
+        preparedStatement.setString(11, movie.getActors());
+        preparedStatement.setString(12, movie.getPlot());
+        preparedStatement.setString(13, movie.getLanguage());
+        preparedStatement.setString(14, movie.getCountry());
+        preparedStatement.setString(15, movie.getAwards());
+        preparedStatement.setString(16, movie.getRated());
+        preparedStatement.setString(17, movie.getMetascore());
+        preparedStatement.setString(18, movie.getImdbRating());
+        preparedStatement.setString(19, movie.getImdbVotes());
+        preparedStatement.setObject(20, typedValue(movie.getYearInt()));
+        preparedStatement.setObject(21, typedValue(movie.getRuntimeMinutes()));
+        preparedStatement.setObject(22, movie.getImdbRatingDouble() != Movie.MISSING ? movie.getImdbRatingDouble() : null);
+        preparedStatement.setObject(23, movie.getImdbVotesLong() != Movie.MISSING ? movie.getImdbVotesLong() : null);
+        preparedStatement.setObject(24, typedValue(movie.getMetascoreInt()));
+    }
+
+    private static Integer typedValue(int value) {
+        return value != Movie.MISSING ? value : null;
+    }
+
+    public Movie[] getMovie(String title) throws SQLException {
+        return queryMovies(titleQuery(title));
+    }
+
+    /**
+     * @deprecated matches title as a substring but year exactly; use find with a MovieFilter
+     */
+    @Deprecated
+    public Movie[] getMovie(String title, String year)  {
+        return queryMovies(new MovieQuery("FROM movies WHERE title LIKE ? AND year = ?", "%" + title + "%", year));
+    }
+
+    /**
+     * @deprecated matches title, year and type as LIKE patterns without wildcards; use find with a MovieFilter
+     */
+    @Deprecated
+    public Movie[] getMovie(String title, String year, String type) throws SQLException {
+        return queryMovies(new MovieQuery("FROM movies WHERE title LIKE ? AND year LIKE ? AND type LIKE ?", title, year, type));
+    }
+
+    /**
+     * Finds the movies matching every criterion of the filter with a single statement.
+     */
+    public Movie[] find(MovieFilter filter) {
+        return queryMovies(plan(filter));
+    }
+
+    /**
+     * Same as find, but loads only the fields list views show.
+     */
+    public MovieSummary[] findSummaries(MovieFilter filter) {
+        MovieQuery query = plan(filter);
+        return queryRows(query.select(SUMMARY_COLUMNS), query.parameters, SUMMARY_READER).toArray(new MovieSummary[0]);
+    }
+
+    public Stream<Movie> streamFind(MovieFilter filter) throws SQLException {
+        return streamMovies(plan(filter));
+    }
+
+    private MovieQuery plan(MovieFilter filter) {
+        MovieQueryPlanner.Plan plan = planner.plan(filter, fullTextSearch, creditLookups);
+        return new MovieQuery(plan.from, plan.parameters);
     }
 
+    /**
+     * Lookups by actor, director, genre and year. Movies come in the order they were added
+     * (rowid order), whether the search index, the credit tables or a LIKE answers, except
+     * while full text search stands in for the credit tables, which ranks best matches first.
+     */
     public Movie[] getActor(String actor) throws SQLException {
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM movies WHERE actors LIKE ?");
-            preparedStatement.setString(1, "%" + actor + "%");
-            ResultSet resultSet = preparedStatement.executeQuery();
-            List<Movie> movies = new ArrayList<>();
-            while (resultSet.next()) {
-                Movie movie = createMovieFromResultSet(resultSet);
-                movies.add(movie);
+        return queryMovies(actorQuery(actor));
+    }
+
+    public Movie[] getDirector(String director) throws SQLException {
+        return queryMovies(directorQuery(director));
+    }
+
+    public Movie[] getGenre(String genre) throws SQLException {
+        return queryMovies(genreQuery(genre));
+    }
+
+    public Movie[] getYear(String year) throws SQLException {
+        return queryMovies(yearQuery(year));
+    }
+
+    /**
+     * Streaming versions of the lookups above. Rows are read from the database as the stream is
+     * consumed, so memory use does not grow with the result size. The stream holds an open
+     * statement and must be closed, e.g. with try-with-resources.
+     */
+    public Stream<Movie> streamMovie(String title) throws SQLException {
+        return streamMovies(titleQuery(title));
+    }
+
+    public Stream<Movie> streamActor(String actor) throws SQLException {
+        return streamMovies(actorQuery(actor));
+    }
+
+    public Stream<Movie> streamDirector(String director) throws SQLException {
+        return streamMovies(directorQuery(director));
+    }
+
+    public Stream<Movie> streamGenre(String genre) throws SQLException {
+        return streamMovies(genreQuery(genre));
+    }
+
+    public Stream<Movie> streamYear(String year) throws SQLException {
+        return streamMovies(yearQuery(year));
+    }
+
+    /**
+     * Streams the whole catalog in title order. Must be closed like the other streams.
+     */
+    public Stream<Movie> streamAllMovies() throws SQLException {
+        return streamMovies(new MovieQuery("FROM movies ORDER BY title, imdbID"));
+    }
+
+    /**
+     * Returns the next page of the catalog in title order using keyset pagination: the page
+     * starts right after the given movie, so each page is an index range scan no matter how deep.
+     * @param afterTitle the title of the last movie on the previous page, or null for the first page
+     * @param afterImdbID the imdbID of the last movie on the previous page
+     * @param limit the maximum number of movies to return
+     */
+    public Movie[] getMoviesAfter(String afterTitle, String afterImdbID, int limit) {
+        return queryMovies(pageQuery(afterTitle, afterImdbID, limit));
+    }
+
+    /**
+     * Summary versions of the lookups for list views. Only imdbID, title, year, type and rating are
+     * read; use getMovieByImdbID to load the full record of a movie the user picks.
+     * Like the other streams these must be closed.
+     */
+    public Stream<MovieSummary> streamActorSummaries(String actor) throws SQLException {
+        return streamSummaries(actorQuery(actor));
+    }
+
+    public Stream<MovieSummary> streamDirectorSummaries(String director) throws SQLException {
+        return streamSummaries(directorQuery(director));
+    }
+
+    public Stream<MovieSummary> streamGenreSummaries(String genre) throws SQLException {
+        return streamSummaries(genreQuery(genre));
+    }
+
+    public Stream<MovieSummary> streamYearSummaries(String year) throws SQLException {
+        return streamSummaries(yearQuery(year));
+    }
+
+    /**
+     * Paged versions of the summary lookups, for list views that wait for the user between
+     * pages. Each call reads one page, in the order of the lookup, and returns its connection
+     * at once, so no read connection or snapshot is held while the user reads.
+     * @param offset how many movies of the lookup to skip, i.e. the number already shown
+     * @param limit the maximum number of movies to return
+     */
+    public MovieSummary[] getActorSummaries(String actor, int offset, int limit) {
+        return summaryPage(actorQuery(actor), offset, limit);
+    }
+
+    public MovieSummary[] getDirectorSummaries(String director, int offset, int limit) {
+        return summaryPage(directorQuery(director), offset, limit);
+    }
+
+    public MovieSummary[] getGenreSummaries(String genre, int offset, int limit) {
+        return summaryPage(genreQuery(genre), offset, limit);
+    }
+
+    public MovieSummary[] getYearSummaries(String year, int offset, int limit) {
+        return summaryPage(yearQuery(year), offset, limit);
+    }
+
+    /**
+     * Reads one page of a lookup. Every lookup query ends in an ORDER BY, so the pages line up.
+     */
+    private MovieSummary[] summaryPage(MovieQuery query, int offset, int limit) {
+        if (query.rowids != null) {
+            // The search index already listed the movies, so only the page's rows are read
+            long[] page = Arrays.copyOfRange(query.rowids, Math.min(offset, query.rowids.length),
+                    Math.min(offset + limit, query.rowids.length));
+            MovieQuery pageQuery = rowidQuery(page);
+            return queryRows(pageQuery.select(SUMMARY_COLUMNS), pageQuery.parameters, SUMMARY_READER)
+                    .toArray(new MovieSummary[0]);
+        }
+        Object[] parameters = Arrays.copyOf(query.parameters, query.parameters.length + 2);
+        parameters[parameters.length - 2] = limit;
+        parameters[parameters.length - 1] = offset;
+        return queryRows(query.select(SUMMARY_COLUMNS) + " LIMIT ? OFFSET ?", parameters, SUMMARY_READER)
+                .toArray(new MovieSummary[0]);
+    }
+
+    /**
+     * Summary version of getMoviesAfter, for paging through the catalog in a list view.
+     */
+    public MovieSummary[] getSummariesAfter(String afterTitle, String afterImdbID, int limit) {
+        MovieQuery query = pageQuery(afterTitle, afterImdbID, limit);
+        return queryRows(query.select(SUMMARY_COLUMNS), query.parameters, SUMMARY_READER)
+                .toArray(new MovieSummary[0]);
+    }
+
+    /**
+     * Loads the full record of one movie.
+     * @return the movie, or null if no movie has this imdbID
+     */
+    public Movie getMovieByImdbID(String imdbID) {
+        Movie[] movies = queryMovies("SELECT * FROM movies WHERE imdbID = ?", imdbID);
+        return movies.length > 0 ? movies[0] : null;
+    }
+
+    private MovieQuery titleQuery(String title) {
+        if (fullTextSearch && hasSearchTerms(title)) {
+            return fullTextQuery("title", title);
+        }
+        return new MovieQuery("FROM movies WHERE title LIKE ?", "%" + title + "%");
+    }
+
+    private MovieQuery actorQuery(String actor) {
+        MovieSearchIndex index = searchIndex;
+        if (creditLookups && index != null) {
+            return rowidQuery(index.person(MovieSearchIndex.ACTORS, actor));
+        }
+        if (creditLookups) {
+            return personQuery(CreditIndex.ACTOR, actor);
+        }
+        if (fullTextSearch && hasSearchTerms(actor)) {
+            return fullTextQuery("actors", actor);
+        }
+        return new MovieQuery("FROM movies WHERE actors LIKE ? ORDER BY rowid", "%" + actor + "%");
+    }
+
+    private MovieQuery directorQuery(String director) {
+        MovieSearchIndex index = searchIndex;
+        if (creditLookups && index != null) {
+            return rowidQuery(index.person(MovieSearchIndex.DIRECTOR, director));
+        }
+        if (creditLookups) {
+            return personQuery(CreditIndex.DIRECTOR, director);
+        }
+        if (fullTextSearch && hasSearchTerms(director)) {
+            return fullTextQuery("director", director);
+        }
+        return new MovieQuery("FROM movies WHERE director LIKE ? ORDER BY rowid", "%" + director + "%");
+    }
+
+    private MovieQuery genreQuery(String genre) {
+        MovieSearchIndex index = searchIndex;
+        if (creditLookups && index != null) {
+            return rowidQuery(index.genre(genre));
+        }
+        if (creditLookups) {
+            return new MovieQuery("FROM genres " +
+                    "JOIN movie_genres ON movie_genres.genre_id = genres.id " +
+                    "JOIN movies ON movies.rowid = movie_genres.movie_id " +
+                    "WHERE genres.name = ? ORDER BY movie_genres.movie_id", genre.trim());
+        }
+        if (fullTextSearch && hasSearchTerms(genre)) {
+            return fullTextQuery("genre", genre);
+        }
+        return new MovieQuery("FROM movies WHERE genre LIKE ? ORDER BY rowid", "%" + genre + "%");
+    }
+
+    private MovieQuery pageQuery(String afterTitle, String afterImdbID, int limit) {
+        if (afterTitle == null) {
+            return new MovieQuery("FROM movies ORDER BY title, imdbID LIMIT ?", limit);
+        }
+        return new MovieQuery("FROM movies WHERE (title, imdbID) > (?, ?) " +
+                "ORDER BY title, imdbID LIMIT ?", afterTitle, afterImdbID, limit);
+    }
+
+    private MovieQuery yearQuery(String year) {
+        MovieSearchIndex index = searchIndex;
+        if (index != null) {
+            return rowidQuery(index.year(year));
+        }
+        return new MovieQuery("FROM movies WHERE year = ? ORDER BY rowid", year);
+    }
+
+    /**
+     * Loads the movies with the given rowids in rowid order, the order the SQL versions of the
+     * credit, genre and year lookups use too, so both return the same list.
+     */
+    private static MovieQuery rowidQuery(long[] rowids) {
+        JsonArray ids = new JsonArray();
+        for (long rowid : rowids) {
+            ids.add(rowid);
+        }
+        return new MovieQuery(rowids, "FROM movies WHERE rowid IN (SELECT value FROM json_each(?)) ORDER BY rowid", ids.toString());
+    }
+
+    /**
+     * Returns movies whose first release year is between the given years, oldest first.
+     */
+    public Movie[] getYearRange(int fromYear, int toYear) {
+        return queryMovies(new MovieQuery("FROM movies WHERE yearValue BETWEEN ? AND ? ORDER BY yearValue", fromYear, toYear));
+    }
+
+    /**
+     * Returns movies with a runtime between the given number of minutes, shortest first.
+     */
+    public Movie[] getRuntimeRange(int fromMinutes, int toMinutes) {
+        return queryMovies(new MovieQuery("FROM movies WHERE runtimeValue BETWEEN ? AND ? ORDER BY runtimeValue", fromMinutes, toMinutes));
+    }
+
+    /**
+     * Returns movies rated at least minRating on IMDb, best rated first.
+     */
+    public Movie[] getMinRating(double minRating) {
+        return queryMovies(new MovieQuery("FROM movies WHERE ratingValue >= ? ORDER BY ratingValue DESC", minRating));
+    }
+
+    /**
+     * Returns movies with at least minVotes IMDb votes, most voted first.
+     */
+    public Movie[] getMinVotes(long minVotes) {
+        return queryMovies(new MovieQuery("FROM movies WHERE votesValue >= ? ORDER BY votesValue DESC", minVotes));
+    }
+
+    /**
+     * Returns movies with a metascore of at least minMetascore, highest first.
+     */
+    public Movie[] getMinMetascore(int minMetascore) {
+        return queryMovies(new MovieQuery("FROM movies WHERE metascoreValue >= ? ORDER BY metascoreValue DESC", minMetascore));
+    }
+
+    /**
+     * Returns movies rated at least minRating with at least minVotes votes, best rated first.
+     * The rating index narrows the rows; the vote count is checked on those rows only.
+     */
+    public Movie[] getTopRated(double minRating, long minVotes) {
+        return queryMovies(new MovieQuery("FROM movies WHERE ratingValue >= ? AND votesValue >= ? " +
+                "ORDER BY ratingValue DESC, votesValue DESC", minRating, minVotes));
+    }
+
+    /**
+     * Finds movies credited to a person by exact, case-insensitive name through the people index.
+     */
+    private MovieQuery personQuery(String role, String name) {
+        return new MovieQuery("FROM people " +
+                "JOIN movie_people ON movie_people.person_id = people.id AND movie_people.role = ? " +
+                "JOIN movies ON movies.rowid = movie_people.movie_id " +
+                "WHERE people.name = ? ORDER BY movie_people.movie_id", role, name.trim());
+    }
+
+    /**
+     * Searches title, actors, director, genre and plot at once, best matches first.
+     * @param text the words to look for; each word matches as a prefix
+     * @return the matching movies
+     */
+    public Movie[] search(String text) {
+        if (!hasSearchTerms(text)) {
+            return new Movie[0];
+        }
+        if (fullTextSearch) {
+            return queryMovies(fullTextQuery(null, text));
+        }
+        String pattern = "%" + text + "%";
+        return queryMovies(new MovieQuery("FROM movies WHERE title LIKE ? OR actors LIKE ? OR director LIKE ? " +
+                "OR genre LIKE ? OR plot LIKE ?", pattern, pattern, pattern, pattern, pattern));
+    }
+
+    /**
+     * Finds movies where every word of text appears in title, actors, director, genre or plot,
+     * each word as a prefix, in rowid order. Served from the search index when it is enabled.
+     */
+    public Movie[] searchAll(String text) {
+        return matchWords(text, true);
+    }
+
+    /**
+     * Like searchAll, but a movie matches if any one of the words appears.
+     */
+    public Movie[] searchAny(String text) {
+        return matchWords(text, false);
+    }
+
+    private Movie[] matchWords(String text, boolean all) {
+        if (!hasSearchTerms(text)) {
+            return new Movie[0];
+        }
+        MovieSearchIndex index = searchIndex;
+        if (index != null) {
+            return queryMovies(rowidQuery(all ? index.matchAll(null, text) : index.matchAny(null, text)));
+        }
+        if (fullTextSearch) {
+            String match = String.join(all ? " AND " : " OR ", toFullTextQuery(text).split(" "));
+            return queryMovies(new MovieQuery("FROM movies_fts JOIN movies ON movies.rowid = movies_fts.rowid " +
+                    "WHERE movies_fts MATCH ? ORDER BY movies.rowid", match));
+        }
+        // Without FTS5 each word is matched as a substring instead of a prefix
+        List<String> terms = splitSearchTerms(text);
+        List<Object> patterns = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        for (String term : terms) {
+            if (where.length() > 0) {
+                where.append(all ? " AND " : " OR ");
             }
-            return movies.toArray(new Movie[0]);
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            where.append("(title LIKE ? OR actors LIKE ? OR director LIKE ? OR genre LIKE ? OR plot LIKE ?)");
+            for (int i = 0; i < 5; i++) {
+                patterns.add("%" + term + "%");
+            }
+        }
+        return queryMovies(new MovieQuery("FROM movies WHERE " + where + " ORDER BY rowid", patterns.toArray()));
+    }
+
+    /**
+     * Finds movies whose title is close to the given one, tolerating typos such as "Godfathr",
+     * best match first. Needs the search index; without it nothing is found.
+     * @param limit the maximum number of movies
+     */
+    public Movie[] fuzzySearch(String title, int limit) {
+        MovieSearchIndex index = searchIndex;
+        if (index == null) {
             return new Movie[0];
         }
+        return queryMovies(rankedQuery(index.fuzzyTitles(title, limit)));
     }
 
+    /**
+     * Returns the actor and director names closest to the given one, best match first.
+     * Needs the search index; without it nothing is found.
+     */
+    public String[] suggestNames(String name, int limit) {
+        MovieSearchIndex index = searchIndex;
+        if (index == null) {
+            return new String[0];
+        }
+        return index.fuzzyNames(name, limit).stream().map(TrigramIndex.Match::getValue).toArray(String[]::new);
+    }
 
+    /**
+     * Returns type-ahead suggestions: up to limit titles, actors and directors with a word starting
+     * with prefix, most IMDb votes first. Needs the search index; without it nothing is found.
+     */
+    public CompletionIndex.Completion[] complete(String prefix, int limit) {
+        MovieSearchIndex index = searchIndex;
+        if (index == null) {
+            return new CompletionIndex.Completion[0];
+        }
+        return index.complete(prefix, limit).toArray(new CompletionIndex.Completion[0]);
+    }
 
-    public Movie[] getDirector(String director) throws SQLException {
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM movies WHERE director LIKE ?");
-            preparedStatement.setString(1, "%" + director + "%");
-            ResultSet resultSet = preparedStatement.executeQuery();
-            List<Movie> movies = new ArrayList<>();
+    /**
+     * Loads the movies with the given rowids in the order given.
+     */
+    private static MovieQuery rankedQuery(long[] rowids) {
+        JsonArray ids = new JsonArray();
+        for (long rowid : rowids) {
+            ids.add(rowid);
+        }
+        return new MovieQuery("FROM json_each(?) AS ranked JOIN movies ON movies.rowid = ranked.value " +
+                "ORDER BY ranked.key", ids.toString());
+    }
+
+    /**
+     * Loads every movie into an in-memory search index that then answers the actor, director,
+     * genre, year, searchAll, searchAny, fuzzySearch, suggestNames and complete lookups, and
+     * keeps it up to date as movies are written and deleted through this object. Rows changed
+     * by other processes are not seen.
+     */
+    public synchronized void enableSearchIndex() throws SQLException {
+        MovieSearchIndex index = new MovieSearchIndex();
+        PreparedStatement preparedStatement = statements.get("SELECT rowid, title, year, genre, director, actors, plot, imdbVotes, votesValue FROM movies");
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            MovieRowMapper mapper = MovieRowMapper.forResultSet(resultSet);
             while (resultSet.next()) {
-                Movie movie = createMovieFromResultSet(resultSet);
-                movies.add(movie);
+                index.add(resultSet.getLong(1), mapper.map(resultSet));
             }
-            return movies.toArray(new Movie[0]);
+        }
+        searchIndex = index;
+    }
+
+    public synchronized void disableSearchIndex() {
+        searchIndex = null;
+        pendingIndexUpdates.clear();
+    }
+
+    /**
+     * Returns the search index, or null if it is not enabled.
+     */
+    public MovieSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Queries the FTS5 index, ranking by bm25 with title matches weighted highest.
+     * @param column the indexed column to restrict the match to, or null for all of them
+     */
+    private MovieQuery fullTextQuery(String column, String text) {
+        String match = toFullTextQuery(text);
+        if (column != null) {
+            match = column + " : (" + match + ")";
+        }
+        return new MovieQuery("FROM movies_fts JOIN movies ON movies.rowid = movies_fts.rowid " +
+                "WHERE movies_fts MATCH ? ORDER BY bm25(movies_fts, 10.0, 4.0, 4.0, 2.0, 1.0)", match);
+    }
+
+    static boolean hasSearchTerms(String text) {
+        return text != null && !splitSearchTerms(text).isEmpty();
+    }
+
+    private static List<String> splitSearchTerms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String term : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Turns user input into an FTS5 query where every word must match as a prefix.
+     * Words are quoted so FTS5 operators in the input are treated as plain text.
+     */
+    static String toFullTextQuery(String text) {
+        StringBuilder query = new StringBuilder();
+        for (String term : splitSearchTerms(text)) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append('"').append(term).append("\"*");
+        }
+        return query.toString();
+    }
+
+    private Movie[] queryMovies(MovieQuery query) {
+        if (lazyDetails) {
+            return queryRows(query.select(CORE_COLUMNS), query.parameters, lazyReader()).toArray(new Movie[0]);
+        }
+        return queryMovies(query.select(MOVIE_COLUMNS), query.parameters);
+    }
+
+    private Movie[] queryMovies(String sql, Object... parameters) {
+        return queryRows(sql, parameters, MOVIE_READER).toArray(new Movie[0]);
+    }
+
+    private Stream<Movie> streamMovies(MovieQuery query) throws SQLException {
+        return streamRows(query.select(MOVIE_COLUMNS), query.parameters, MOVIE_READER);
+    }
+
+    private Stream<MovieSummary> streamSummaries(MovieQuery query) throws SQLException {
+        return streamRows(query.select(SUMMARY_COLUMNS), query.parameters, SUMMARY_READER);
+    }
+
+    /**
+     * Runs a query on a pooled read connection and maps every row.
+     * The result set is always closed; the statement stays cached for reuse.
+     */
+    private <T> List<T> queryRows(String sql, Object[] parameters, RowReaderFactory<T> mapping) {
+        try (ReadConnectionPool.ReadConnection readConnection = readers.borrow()) {
+            PreparedStatement preparedStatement = readConnection.statement(sql);
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setObject(i + 1, parameters[i]);
+            }
+            List<T> rows = new ArrayList<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                RowReader<T> reader = mapping.forResultSet(resultSet);
+                while (resultSet.next()) {
+                    rows.add(reader.read(resultSet));
+                }
+            }
+            return rows;
         } catch (SQLException e) {
             System.out.println(e.getMessage());
-            return new Movie[0];
+            return new ArrayList<>();
         }
     }
 
-    public Movie[] getGenre(String genre) throws SQLException {
+    /**
+     * Opens a query whose rows are mapped lazily as the stream is consumed. The stream keeps a
+     * pooled read connection and an uncached statement for its lifetime; closing the stream
+     * closes the statement and returns the connection. Read errors are printed and end the stream, like the array-based methods.
+     */
+    private <T> Stream<T> streamRows(String sql, Object[] parameters, RowReaderFactory<T> mapping) throws SQLException {
+        ReadConnectionPool.ReadConnection readConnection = readers.borrow();
+        PreparedStatement preparedStatement;
+        ResultSet resultSet;
+        RowReader<T> reader;
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM movies WHERE genre LIKE ?");
-            preparedStatement.setString(1, "%" + genre + "%");
-            ResultSet resultSet = preparedStatement.executeQuery();
-            List<Movie> movies = new ArrayList<>();
-            while (resultSet.next()) {
-                Movie movie = createMovieFromResultSet(resultSet);
-                movies.add(movie);
+            preparedStatement = readConnection.getConnection().prepareStatement(sql);
+        } catch (SQLException e) {
+            readConnection.close();
+            throw e;
+        }
+        try {
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setObject(i + 1, parameters[i]);
             }
-            return movies.toArray(new Movie[0]);
+            preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+            resultSet = preparedStatement.executeQuery();
+            reader = mapping.forResultSet(resultSet);
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
-            return new Movie[0];
+            preparedStatement.close();
+            readConnection.close();
+            throw e;
         }
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(reader.read(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    System.out.println(e.getMessage());
+                    return false;
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                resultSet.close();
+                preparedStatement.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            } finally {
+                readConnection.close();
+            }
+        });
     }
 
-    public Movie[] getYear(String year) throws SQLException {
+    private static MovieSummary createSummaryFromResultSet(ResultSet resultSet) throws SQLException {
+        return new MovieSummary(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3),
+                resultSet.getString(4), resultSet.getString(5));
+    }
+
+    public synchronized void deleteMovie(Movie movie) {
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM movies WHERE year = ?");
-            preparedStatement.setString(1, year);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            List<Movie> movies = new ArrayList<>();
-            while (resultSet.next()) {
-                Movie movie = createMovieFromResultSet(resultSet);
-                movies.add(movie);
+            MovieSearchIndex index = searchIndex;
+            long rowid = 0;
+            if (index != null) {
+                PreparedStatement preparedStatement = statements.get("SELECT rowid FROM movies WHERE imdbID = ?");
+                preparedStatement.setString(1, movie.getImdbID());
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    rowid = resultSet.next() ? resultSet.getLong(1) : 0;
+                }
+            }
+            PreparedStatement preparedStatement = statements.get("DELETE FROM movies WHERE imdbID = ?");
+            preparedStatement.setString(1, movie.getImdbID());
+            preparedStatement.executeUpdate();
+            if (index != null) {
+                index.remove(rowid);
             }
-            return movies.toArray(new Movie[0]);
         } catch (SQLException e) {
             System.out.println(e.getMessage());
-            return new Movie[0];
         }
     }
 
-    private Movie createMovieFromResultSet(ResultSet resultSet) throws SQLException {
-        Movie movie = new Movie( null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
-        movie.setTitle(resultSet.getString("title"));
-        movie.setReleased(resultSet.getString("released"));
-        movie.setYear(resultSet.getString("year"));
-        movie.setImdbID(resultSet.getString("imdbID"));
-        movie.setType(resultSet.getString("type"));
-        movie.setPoster(resultSet.getString("poster"));
-        movie.setRuntime(resultSet.getString("runtime"));
-        movie.setGenre(resultSet.getString("genre"));
-        movie.setDirector(resultSet.getString("director"));
-        movie.setWriter(resultSet.getString("writer"));
-        movie.setActors(resultSet.getString("actors"));
-        movie.setPlot(resultSet.getString("plot"));
-        movie.setLanguage(resultSet.getString("language"));
-        movie.setCountry(resultSet.getString("country"));
-        movie.setAwards(resultSet.getString("awards"));
-        movie.setRated(resultSet.getString("rated"));
-        movie.setMetascore(resultSet.getString("metascore"));
-        movie.setImdbRating(resultSet.getString("imdbRating"));
-        movie.setImdbVotes(resultSet.getString("imdbVotes"));
-        return movie;
-    }
-
-    public void deleteMovie(Movie movie) {
+    /**
+     * Turns lazy loading of writer, actors, plot, awards and poster on or off for the methods
+     * returning arrays of movies. When on, those fields are read only when one of their getters
+     * is first called, for all movies of the same result at once. Streams and getMovieByImdbID
+     * always load every field.
+     */
+    public void setLazyDetails(boolean lazy) {
+        lazyDetails = lazy;
+    }
+
+    /**
+     * Reads writer, actors, plot, awards and poster of the given movies in one query.
+     * @return the five fields in that order, keyed by imdbID
+     */
+    Map<String, String[]> getMovieDetails(Collection<String> imdbIDs) {
+        Map<String, String[]> details = new HashMap<>();
+        if (imdbIDs.isEmpty()) {
+            return details;
+        }
+        // The ids are passed as one JSON array so the statement is the same for any number of them
+        JsonArray ids = new JsonArray();
+        imdbIDs.forEach(ids::add);
+        List<String[]> rows = queryRows("SELECT imdbID, writer, actors, plot, awards, poster FROM movies " +
+                "WHERE imdbID IN (SELECT value FROM json_each(?))", new Object[]{ids.toString()}, DETAILS_READER);
+        for (String[] row : rows) {
+            details.put(row[0], new String[]{row[1], row[2], row[3], row[4], row[5]});
+        }
+        return details;
+    }
+
+    /**
+     * Returns the cached OMDB response for a request if it has not expired by now.
+     */
+    public OmdbResponseCache.Entry getCachedResponse(String request, long now) {
+        List<OmdbResponseCache.Entry> rows = queryRows("SELECT body, expires_at FROM omdb_cache WHERE request = ? AND expires_at > ?",
+                new Object[]{request, now}, CACHE_ENTRY_READER);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public synchronized void putCachedResponse(String request, String body, long expiresAt) {
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement("DELETE FROM movies WHERE imdbID = ?");
-            preparedStatement.setString(1, movie.getImdbID());
+            PreparedStatement preparedStatement = statements.get("INSERT OR REPLACE INTO omdb_cache (request, body, expires_at) VALUES (?, ?, ?)");
+            preparedStatement.setString(1, request);
+            preparedStatement.setString(2, body);
+            preparedStatement.setLong(3, expiresAt);
             preparedStatement.executeUpdate();
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
     }
-}
 
+    public synchronized void deleteExpiredResponses(long now) {
+        try {
+            PreparedStatement preparedStatement = statements.get("DELETE FROM omdb_cache WHERE expires_at <= ?");
+            preparedStatement.setLong(1, now);
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
+    /**
+     * The FROM/WHERE/ORDER BY part and parameters of a movie lookup, so the same lookup can be run
+     * as an array or a stream and with either the full or the summary column list.
+     */
+    private static final class MovieQuery {
+        final String from;
+        final Object[] parameters;
+        // The rowids listed by a search index answer, in order, or null for other queries
+        final long[] rowids;
 
+        MovieQuery(String from, Object... parameters) {
+            this(null, from, parameters);
+        }
 
+        MovieQuery(long[] rowids, String from, Object... parameters) {
+            this.rowids = rowids;
+            this.from = from;
+            this.parameters = parameters;
+        }
+
+        String select(String columns) {
+            return "SELECT " + columns + " " + from;
+        }
+    }
 
+    /**
+     * A row written by the open transaction and the movie stored in it.
+     */
+    private static final class IndexUpdate {
+        final long rowid;
+        final Movie movie;
 
+        IndexUpdate(long rowid, Movie movie) {
+            this.rowid = rowid;
+            this.movie = movie;
+        }
+    }
 
+    /**
+     * Maps the current row of a result set to an object.
+     */
+    private interface RowReader<T> {
+        T read(ResultSet resultSet) throws SQLException;
+    }
 
+    /**
+     * Prepares a RowReader for the columns of one result set, before the first row is read.
+     */
+    private interface RowReaderFactory<T> {
+        RowReader<T> forResultSet(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Maps rows without the heavy fields and groups the movies into batches that load those
+     * fields together on first use.
+     */
+    private RowReaderFactory<Movie> lazyReader() {
+        return resultSet -> {
+            MovieRowMapper mapper = MovieRowMapper.forResultSet(resultSet);
+            LazyMovieBatch[] batch = {new LazyMovieBatch(this)};
+            return row -> {
+                if (batch[0].size() >= LAZY_BATCH_SIZE) {
+                    batch[0] = new LazyMovieBatch(this);
+                }
+                Movie movie = mapper.map(row);
+                batch[0].add(movie);
+                return movie;
+            };
+        };
+    }
+
+    private static final RowReaderFactory<Movie> MOVIE_READER = resultSet -> MovieRowMapper.forResultSet(resultSet)::map;
+
+    private static final RowReaderFactory<MovieSummary> SUMMARY_READER = resultSet -> SQLite::createSummaryFromResultSet;
+
+    private static final RowReaderFactory<String[]> DETAILS_READER = resultSet -> row -> new String[]{row.getString(1),
+            row.getString(2), row.getString(3), row.getString(4), row.getString(5), row.getString(6)};
+
+    private static final RowReaderFactory<OmdbResponseCache.Entry> CACHE_ENTRY_READER =
+            resultSet -> row -> new OmdbResponseCache.Entry(row.getString(1), row.getLong(2));
+
+    /**
+     * Closes the read pool, then every cached statement and the writer connection.
+     * Read connections still held by open streams are closed when those streams are.
+     */
+    @Override
+    public synchronized void close() throws SQLException {
+        readers.close();
+        statements.close();
+        connection.close();
+    }
+}
@@ -0,0 +1,37 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Small key/value table recording which schema migrations have run and how far
+ * a resumable migration got.
+ */
+public class SchemaInfo {
+
+    private final StatementCache statements;
+
+    public SchemaInfo(StatementCache statements) {
+        this.statements = statements;
+    }
+
+    public void createTable() throws SQLException {
+        statements.get("CREATE TABLE IF NOT EXISTS schema_info ( " +
+                "name TEXT PRIMARY KEY, " +
+                "value INTEGER)").executeUpdate();
+    }
+
+    public long get(String name, long defaultValue) throws SQLException {
+        PreparedStatement preparedStatement = statements.get("SELECT value FROM schema_info WHERE name = ?");
+        preparedStatement.setString(1, name);
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : defaultValue;
+        }
+    }
+
+    public void set(String name, long value) throws SQLException {
+        PreparedStatement preparedStatement = statements.get("INSERT OR REPLACE INTO schema_info (name, value) VALUES (?, ?)");
+        preparedStatement.setString(1, name);
+        preparedStatement.setLong(2, value);
+        preparedStatement.executeUpdate();
+    }
+}
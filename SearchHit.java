@@ -0,0 +1,49 @@
+/**
+ * One result of an OMDB search: enough to list and pick a title. The full movie is
+ * fetched by its imdbID only when it is needed.
+ */
+public class SearchHit {
+    private final String title;
+    private final String year;
+    private final String imdbID;
+    private final String type;
+    private final String poster;
+
+    public SearchHit(String title, String year, String imdbID, String type, String poster) {
+        this.title = title;
+        this.year = year;
+        this.imdbID = imdbID;
+        this.type = type;
+        this.poster = poster;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getYear() {
+        return year;
+    }
+
+    public String getImdbID() {
+        return imdbID;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getPoster() {
+        return poster;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchHit{" +
+                "title='" + title + '\'' +
+                ", year='" + year + '\'' +
+                ", imdbID='" + imdbID + '\'' +
+                ", type='" + type + '\'' +
+                '}';
+    }
+}
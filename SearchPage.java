@@ -0,0 +1,26 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of an OMDB search, at most ten hits, with the total number of hits across all pages.
+ */
+public class SearchPage {
+
+    public static final SearchPage EMPTY = new SearchPage(Collections.emptyList(), 0);
+
+    private final List<SearchHit> hits;
+    private final int totalResults;
+
+    public SearchPage(List<SearchHit> hits, int totalResults) {
+        this.hits = Collections.unmodifiableList(hits);
+        this.totalResults = totalResults;
+    }
+
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+
+    public int getTotalResults() {
+        return totalResults;
+    }
+}
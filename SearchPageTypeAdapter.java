@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads and writes an OMDB search answer ({"Search": [...], "totalResults": "n"}) in one
+ * pass, checking Response and Error the same way MovieTypeAdapter does.
+ */
+public class SearchPageTypeAdapter extends TypeAdapter<SearchPage> {
+
+    public static final SearchPageTypeAdapter INSTANCE = new SearchPageTypeAdapter();
+
+    /**
+     * @return the page, or null if OMDB found nothing
+     * @throws IOException for any other error answer, such as "Too many results."
+     */
+    @Override
+    public SearchPage read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<SearchHit> hits = new ArrayList<>();
+        int totalResults = 0;
+        String response = null, error = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "Search":
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        hits.add(readHit(in));
+                    }
+                    in.endArray();
+                    break;
+                case "totalResults":
+                    // A missing or unexpected count such as "N/A" leaves it at 0
+                    Integer count = OmdbValues.parseCount(MovieTypeAdapter.readString(in));
+                    totalResults = count != null ? count : 0;
+                    break;
+                case "Response": response = MovieTypeAdapter.readString(in); break;
+                case "Error": error = MovieTypeAdapter.readString(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        if ("False".equals(response)) {
+            if (MovieTypeAdapter.isNotFound(error)) {
+                return null;
+            }
+            throw new OmdbException("OMDB error: " + error, 200, false);
+        }
+        return new SearchPage(hits, totalResults);
+    }
+
+    private static SearchHit readHit(JsonReader in) throws IOException {
+        String title = null, year = null, imdbID = null, type = null, poster = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "Title": title = MovieTypeAdapter.readString(in); break;
+                case "Year": year = MovieTypeAdapter.readString(in); break;
+                case "imdbID": imdbID = MovieTypeAdapter.readString(in); break;
+                case "Type": type = MovieTypeAdapter.readString(in); break;
+                case "Poster": poster = MovieTypeAdapter.readString(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return new SearchHit(title, year, imdbID, type, poster);
+    }
+
+    @Override
+    public void write(JsonWriter out, SearchPage page) throws IOException {
+        if (page == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("Search").beginArray();
+        for (SearchHit hit : page.getHits()) {
+            out.beginObject();
+            out.name("Title").value(hit.getTitle());
+            out.name("Year").value(hit.getYear());
+            out.name("imdbID").value(hit.getImdbID());
+            out.name("Type").value(hit.getType());
+            out.name("Poster").value(hit.getPoster());
+            out.endObject();
+        }
+        out.endArray();
+        out.name("totalResults").value(Integer.toString(page.getTotalResults()));
+        out.endObject();
+    }
+}
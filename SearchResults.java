@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The hits of an OMDB search, fetched one page of ten at a time as the iteration reaches it.
+ * A failed page fetch is printed and ends the iteration.
+ */
+public class SearchResults implements Iterator<SearchHit> {
+
+    // OMDB serves at most 100 pages of a search
+    private static final int MAX_PAGES = 100;
+
+    private final OMDBApi api;
+    private final String title;
+    private final String year;
+    private final String type;
+
+    private List<SearchHit> page = new ArrayList<>();
+    private int position;
+    private int pagesFetched;
+    private int hitsFetched;
+    private int totalResults = -1;
+    private boolean exhausted;
+
+    SearchResults(OMDBApi api, String title, String year, String type) {
+        this.api = api;
+        this.title = title;
+        this.year = year;
+        this.type = type;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (position >= page.size()) {
+            if (!fetchNextPage()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public SearchHit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(position++);
+    }
+
+    /**
+     * Returns the hits up to the end of the current page, fetching the next page if the
+     * current one is used up.
+     * @return up to ten hits, empty once there are no more
+     */
+    public List<SearchHit> nextPage() {
+        if (!hasNext()) {
+            return new ArrayList<>();
+        }
+        List<SearchHit> rest = new ArrayList<>(page.subList(position, page.size()));
+        position = page.size();
+        return rest;
+    }
+
+    /**
+     * Returns how many hits OMDB has for the search in total, fetching the first page if needed.
+     */
+    public int getTotalResults() {
+        if (totalResults < 0) {
+            hasNext();
+        }
+        return Math.max(totalResults, 0);
+    }
+
+    private boolean fetchNextPage() {
+        if (exhausted || pagesFetched >= MAX_PAGES || (totalResults >= 0 && hitsFetched >= totalResults)) {
+            exhausted = true;
+            return false;
+        }
+        SearchPage next;
+        try {
+            next = api.searchPageAsync(title, year, type, pagesFetched + 1).join();
+        } catch (CompletionException e) {
+            OMDBApi.printFailure(e.getCause());
+            exhausted = true;
+            return false;
+        }
+        pagesFetched++;
+        totalResults = next.getTotalResults();
+        if (next.getHits().isEmpty()) {
+            exhausted = true;
+            return false;
+        }
+        hitsFetched += next.getHits().size();
+        page = next.getHits();
+        position = 0;
+        return true;
+    }
+}
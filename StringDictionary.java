@@ -0,0 +1,82 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares one String instance per distinct value of a low-cardinality field, such as a
+ * rating or a genre list, so thousands of movies do not each keep their own copy. Every
+ * value also gets a small integer code, for callers that want to store codes instead of
+ * references. Once the dictionary is full, new values are returned unchanged and get no code.
+ */
+public class StringDictionary {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final int capacity;
+    private final ConcurrentMap<String, Integer> codes = new ConcurrentHashMap<>();
+    // Written before the code is published in codes, so a reader that found a code sees its value
+    private volatile String[] values = new String[64];
+    private int size;
+
+    public StringDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StringDictionary(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the shared instance equal to value, adding value if it is new and there is room.
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        int code = code(value);
+        return code >= 0 ? values[code] : value;
+    }
+
+    /**
+     * Returns the code of value, adding it if it is new and there is room.
+     * @return the code, or -1 for null or when the dictionary is full
+     */
+    public int code(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (size >= capacity) {
+                return -1;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(capacity, size * 2));
+            }
+            values[size] = value;
+            codes.put(value, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Returns the value for a code returned by code(), or null for -1.
+     */
+    public String value(int code) {
+        return code >= 0 ? values[code] : null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
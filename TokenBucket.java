@@ -0,0 +1,112 @@
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter for OMDB requests: a token bucket refilled at a steady rate per second,
+ * plus a daily quota that resets at midnight UTC like the OMDB API key limit.
+ */
+public class TokenBucket {
+
+    private final double permitsPerSecond;
+    private final double capacity;
+    private final long dailyQuota;
+    private final Clock clock;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private LocalDate day;
+    private long usedToday;
+
+    /**
+     * @param permitsPerSecond the sustained request rate
+     * @param burst how many requests may be sent back to back after an idle period
+     * @param dailyQuota the maximum number of requests per UTC day, or 0 for no limit
+     */
+    public TokenBucket(double permitsPerSecond, int burst, long dailyQuota) {
+        this(permitsPerSecond, burst, dailyQuota, Clock.systemUTC());
+    }
+
+    TokenBucket(double permitsPerSecond, int burst, long dailyQuota, Clock clock) {
+        if (permitsPerSecond <= 0 || burst < 1 || dailyQuota < 0) {
+            throw new IllegalArgumentException("rate and burst must be positive and the quota not negative");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = burst;
+        this.dailyQuota = dailyQuota;
+        this.clock = clock;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.day = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+    }
+
+    /**
+     * Waits until a request may be sent and takes a token for it.
+     * @return false if today's quota is used up, in which case no token is taken
+     */
+    public boolean acquire() throws InterruptedException {
+        while (true) {
+            long waitNanos = tryAcquire();
+            if (waitNanos <= 0) {
+                return waitNanos == 0;
+            }
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        }
+    }
+
+    /**
+     * Like acquire(), but waits without holding a thread.
+     * @return a future completed with true once a token is taken, or with false if today's quota is used up
+     */
+    public CompletableFuture<Boolean> acquireAsync() {
+        CompletableFuture<Boolean> acquired = new CompletableFuture<>();
+        acquireAsync(acquired);
+        return acquired;
+    }
+
+    private void acquireAsync(CompletableFuture<Boolean> acquired) {
+        long waitNanos = tryAcquire();
+        if (waitNanos > 0) {
+            CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS).execute(() -> acquireAsync(acquired));
+        } else {
+            acquired.complete(waitNanos == 0);
+        }
+    }
+
+    /**
+     * Takes a token if one is available.
+     * @return 0 if a token was taken, -1 if today's quota is used up, otherwise how many nanoseconds to wait
+     */
+    private synchronized long tryAcquire() {
+        LocalDate today = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+        if (!today.equals(day)) {
+            day = today;
+            usedToday = 0;
+        }
+        if (dailyQuota > 0 && usedToday >= dailyQuota) {
+            return -1;
+        }
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            usedToday++;
+            return 0;
+        }
+        return Math.max(1, (long) ((1 - tokens) / permitsPerSecond * 1_000_000_000L));
+    }
+
+    /**
+     * Returns how many requests are left today, or Long.MAX_VALUE without a quota.
+     */
+    public synchronized long remainingToday() {
+        return dailyQuota > 0 ? Math.max(0, dailyQuota - usedToday) : Long.MAX_VALUE;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * permitsPerSecond);
+        lastRefillNanos = now;
+    }
+}
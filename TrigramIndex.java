@@ -0,0 +1,294 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * Typo-tolerant lookup of names and titles by trigram similarity. Each distinct value is
+ * folded like MovieSearchIndex.tokenize and split into the three-letter pieces of its words,
+ * padded the way PostgreSQL's pg_trgm does ("  go", " go", "god", ... "er "). A query matches
+ * values sharing enough of its trigrams; matches are ranked by the Jaccard similarity of the
+ * trigram sets and by edit distance.
+ *
+ * Only the posting lists of the query's rarest trigrams are read to find candidates; common
+ * trigrams such as " th" are just probed for each candidate by binary search. At most
+ * MAX_CANDIDATES postings are read per query, so lookups stay bounded as the catalog grows.
+ * Not thread-safe; MovieSearchIndex guards it with its lock.
+ */
+public class TrigramIndex {
+
+    public static final double DEFAULT_MIN_SIMILARITY = 0.3;
+
+    // The most posting entries read to find candidates for one query
+    static final int MAX_CANDIDATES = 20000;
+    // How many of the best values by trigram similarity are ranked by edit distance, per requested match
+    private static final int RESCORED_PER_MATCH = 5;
+
+    /**
+     * A matching value, the documents it belongs to and how close it is to the query.
+     */
+    public static final class Match {
+        private final String value;
+        private final double similarity;
+        private final int distance;
+        private final double score;
+        private final int[] documents;
+
+        Match(String value, double similarity, int distance, double score, int[] documents) {
+            this.value = value;
+            this.similarity = similarity;
+            this.distance = distance;
+            this.score = score;
+            this.documents = documents;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * The share of trigrams the value and the query have in common, from 0 to 1.
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        /**
+         * The Levenshtein distance between the folded value and the folded query.
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        int[] getDocuments() {
+            return documents;
+        }
+
+        /**
+         * Trigram similarity and edit distance relative to the longer string, weighted equally, from 0 to 1.
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    private final Map<String, Integer> entries = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private final List<String> folded = new ArrayList<>();
+    private final List<MovieSearchIndex.IntList> documents = new ArrayList<>();
+    private final MovieSearchIndex.IntList trigramCounts = new MovieSearchIndex.IntList();
+    private final Map<Long, MovieSearchIndex.IntList> postings = new HashMap<>();
+
+    /**
+     * Records that a document contains the value. Values that fold to the same text share one entry.
+     */
+    public void add(String value, int document) {
+        String key = fold(value);
+        if (key.isEmpty()) {
+            return;
+        }
+        Integer entry = entries.get(key);
+        if (entry == null) {
+            entry = values.size();
+            entries.put(key, entry);
+            values.add(value.trim());
+            folded.add(key);
+            documents.add(new MovieSearchIndex.IntList());
+            long[] trigrams = trigrams(key);
+            trigramCounts.add(trigrams.length);
+            for (long trigram : trigrams) {
+                postings.computeIfAbsent(trigram, t -> new MovieSearchIndex.IntList()).add(entry);
+            }
+        }
+        MovieSearchIndex.IntList list = documents.get(entry);
+        if (list.size == 0 || list.values[list.size - 1] != document) {
+            list.add(document);
+        }
+    }
+
+    /**
+     * Renumbers documents after the owner dropped some: document d becomes renumbered[d], or
+     * goes if that is -1. Values left without documents are removed along with their postings.
+     */
+    void compact(int[] renumbered) {
+        int[] entryNumbers = new int[values.size()];
+        int kept = 0;
+        for (int entry = 0; entry < values.size(); entry++) {
+            if (documents.get(entry).renumber(renumbered) == 0) {
+                entries.remove(folded.get(entry));
+                entryNumbers[entry] = -1;
+                continue;
+            }
+            entryNumbers[entry] = kept;
+            values.set(kept, values.get(entry));
+            folded.set(kept, folded.get(entry));
+            documents.set(kept, documents.get(entry));
+            trigramCounts.values[kept] = trigramCounts.values[entry];
+            kept++;
+        }
+        if (kept == values.size()) {
+            return;
+        }
+        values.subList(kept, values.size()).clear();
+        folded.subList(kept, folded.size()).clear();
+        documents.subList(kept, documents.size()).clear();
+        trigramCounts.size = kept;
+        for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+            entry.setValue(entryNumbers[entry.getValue()]);
+        }
+        postings.values().removeIf(list -> list.renumber(entryNumbers) == 0);
+    }
+
+    /**
+     * Returns the number of distinct values.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Finds the values closest to text, best first.
+     * @param limit the maximum number of matches
+     * @param minSimilarity the share of trigrams a value must have in common with text, from 0 to 1
+     * @param live tells whether a document still exists; values with no live document are skipped
+     */
+    public List<Match> search(String text, int limit, double minSimilarity, IntPredicate live) {
+        String query = fold(text);
+        long[] queryTrigrams = trigrams(query);
+        if (queryTrigrams.length == 0 || limit < 1) {
+            return new ArrayList<>();
+        }
+        MovieSearchIndex.IntList[] lists = new MovieSearchIndex.IntList[queryTrigrams.length];
+        for (int i = 0; i < queryTrigrams.length; i++) {
+            MovieSearchIndex.IntList list = postings.get(queryTrigrams[i]);
+            lists[i] = list != null ? list : new MovieSearchIndex.IntList();
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        // similarity = common / (query + value - common) <= common / query, so a match shares at least
+        // `required` trigrams and contains one of the (length - required + 1) rarest ones. Those lists
+        // give the candidates, but once they hold MAX_CANDIDATES entries the rest are left out, which
+        // only loses matches made of common trigrams and keeps the cost bounded as the catalog grows.
+        int required = Math.max(1, (int) Math.ceil(minSimilarity * queryTrigrams.length));
+        int scanned = 0;
+        int candidateCount = 0;
+        while (scanned < queryTrigrams.length - required + 1
+                && (scanned == 0 || candidateCount + lists[scanned].size <= MAX_CANDIDATES)) {
+            candidateCount += lists[scanned++].size;
+        }
+        int[] candidates = new int[candidateCount];
+        int filled = 0;
+        for (int i = 0; i < scanned; i++) {
+            System.arraycopy(lists[i].values, 0, candidates, filled, lists[i].size);
+            filled += lists[i].size;
+        }
+        Arrays.sort(candidates);
+
+        List<double[]> similar = new ArrayList<>();
+        for (int i = 0; i < candidates.length; ) {
+            int entry = candidates[i];
+            int common = 0;
+            // Each posting list holds an entry once, so repeats of it come from different trigrams
+            while (i < candidates.length && candidates[i] == entry) {
+                common++;
+                i++;
+            }
+            int count = trigramCounts.values[entry];
+            // Too short or too long to reach the similarity whatever it shares
+            if (count < minSimilarity * queryTrigrams.length || count * minSimilarity > queryTrigrams.length) {
+                continue;
+            }
+            for (int j = scanned; j < lists.length; j++) {
+                if (Arrays.binarySearch(lists[j].values, 0, lists[j].size, entry) >= 0) {
+                    common++;
+                }
+            }
+            double similarity = (double) common / (queryTrigrams.length + count - common);
+            if (similarity >= minSimilarity) {
+                similar.add(new double[]{similarity, entry});
+            }
+        }
+
+        // Edit distance is only worth computing for the values most similar by trigrams
+        similar.sort((a, b) -> Double.compare(b[0], a[0]));
+        List<Match> matches = new ArrayList<>();
+        for (double[] found : similar) {
+            if (matches.size() == limit * RESCORED_PER_MATCH) {
+                break;
+            }
+            int entry = (int) found[1];
+            int[] liveDocuments = liveDocuments(documents.get(entry), live);
+            if (liveDocuments.length > 0) {
+                String candidate = folded.get(entry);
+                int distance = editDistance(query, candidate);
+                double score = (found[0] + 1.0 - (double) distance / Math.max(query.length(), candidate.length())) / 2;
+                matches.add(new Match(values.get(entry), found[0], distance, score, liveDocuments));
+            }
+        }
+        matches.sort((a, b) -> {
+            int byScore = Double.compare(b.score, a.score);
+            return byScore != 0 ? byScore : a.value.compareTo(b.value);
+        });
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    private static int[] liveDocuments(MovieSearchIndex.IntList list, IntPredicate live) {
+        int[] found = new int[list.size];
+        int count = 0;
+        for (int i = 0; i < list.size; i++) {
+            if (live.test(list.values[i])) {
+                found[count++] = list.values[i];
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    static String fold(String value) {
+        return String.join(" ", MovieSearchIndex.tokenize(value));
+    }
+
+    /**
+     * Returns the distinct trigrams of the words of folded text, each packed into a long.
+     */
+    static long[] trigrams(String folded) {
+        Set<Long> found = new HashSet<>();
+        for (String word : folded.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                found.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2));
+            }
+        }
+        long[] trigrams = new long[found.size()];
+        int i = 0;
+        for (long trigram : found) {
+            trigrams[i++] = trigram;
+        }
+        return trigrams;
+    }
+
+    static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}